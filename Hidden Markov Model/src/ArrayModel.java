@@ -0,0 +1,281 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The transitions and emissions of a trained bigram model in array form, with tags and words
+ * replaced by indices. At DOUBLE precision, scores are the same log scores the Viterbi algorithm
+ * computes from the Trainer's maps, so decoders reading this model give exactly the same results.
+ * FLOAT and FIXED16 store the tables in 4 and 2 bytes per score instead of 8, trading a little
+ * accuracy for memory.
+ *
+ * @author Jared Cole, Aaron Lee
+ */
+public class ArrayModel {
+	
+	/**
+	 * How the transition and emissions scores are stored.
+	 */
+	public enum Precision {
+		DOUBLE, // 64-bit floating point, exactly the Trainer's scores
+		FLOAT, // 32-bit floating point
+		FIXED16 // 16-bit fixed point, with one shared scale per table
+	}
+	
+	private static final short MISSING = Short.MIN_VALUE; // FIXED16 value for no transition or an UNOBSERVED emission
+	private static final long BOXED_INTEGER_BYTES = 16; // Integer value in an index map
+	
+	private Precision precision; // how the tables are stored
+	private String[] tags; // every tag in the model, indexed
+	private Map<String, Integer> tagIndex; // map of tag to its index in tags
+	private Map<String, Integer> wordIndex; // map of word to its row in emissions
+	private UnknownWordModel unknownWords; // emissions model for words without their own row
+	private double[] unknownClassScores; // [t] is the Trainer.UNKNOWN word class score of tag t, null if none
+	// Only the pair of tables for the model's precision is filled in
+	private double[] transitions; // [s*T + t] is the log transition score s -> t, negative infinity if none
+	private double[] emissions; // [w*T + t] is the emissions score of tag t for word w, UNOBSERVED if none
+	private float[] floatTransitions, floatEmissions; // the same tables in FLOAT precision
+	private short[] fixedTransitions, fixedEmissions; // the same tables in FIXED16 precision, MISSING if none
+	private double transitionScale, emissionScale; // score of one FIXED16 step in each table
+
+	public String[] getTags(){
+		return tags;
+	}
+	public int getTagCount(){
+		return tags.length;
+	}
+	public int getWordCount(){
+		return wordIndex.size();
+	}
+	public Precision getPrecision(){
+		return precision;
+	}
+
+	/**
+	 * Converts the maps of a trained Trainer into arrays, keeping the exact scores.
+	 *
+	 * @param trainer	Trainer that has finished training
+	 */
+	public ArrayModel(Trainer trainer){
+		this(trainer, Precision.DOUBLE);
+	}
+
+	/**
+	 * Converts the maps of a trained Trainer into arrays stored at the given precision.
+	 *
+	 * @param trainer	Trainer that has finished training
+	 * @param precision	how to store the transition and emissions scores
+	 */
+	public ArrayModel(Trainer trainer, Precision precision){
+		this.precision = precision;
+		Map<String, Map<String, Double>> transitionMap = trainer.getTransitions();
+		Map<String, Map<String, Double>> observationMap = trainer.getObservations();
+
+		// Index every tag that appears in the transitions or the emissions, starting with the unknown word
+		// model's tags in its own order, so its score arrays can be read with the same indices
+		tagIndex = new HashMap<String, Integer>();
+		List<String> tagList = new ArrayList<String>();
+		unknownWords = trainer.getUnknownWords();
+		if (unknownWords != null) {
+			for (String tag : unknownWords.getTags()) addTag(tag, tagList);
+		}
+		for (String state : transitionMap.keySet()) {
+			addTag(state, tagList);
+			for (String nextState : transitionMap.get(state).keySet()) addTag(nextState, tagList);
+		}
+		for (String word : observationMap.keySet()) {
+			for (String state : observationMap.get(word).keySet()) addTag(state, tagList);
+		}
+		tags = tagList.toArray(new String[tagList.size()]);
+		int T = tags.length;
+
+		// Log transition scores, computed the same way the Viterbi algorithm does
+		transitions = new double[T*T];
+		for (int i = 0; i < transitions.length; i++) transitions[i] = Double.NEGATIVE_INFINITY;
+		for (String state : transitionMap.keySet()) {
+			int s = tagIndex.get(state);
+			for (String nextState : transitionMap.get(state).keySet()) {
+				transitions[s*T + tagIndex.get(nextState)] = Math.log(transitionMap.get(state).get(nextState));
+			}
+		}
+
+		// Emissions scores are already logged by the Trainer
+		wordIndex = new HashMap<String, Integer>();
+		emissions = new double[observationMap.size()*T];
+		for (int i = 0; i < emissions.length; i++) emissions[i] = Viterbi.UNOBSERVED;
+		for (String word : observationMap.keySet()) {
+			int w = wordIndex.size();
+			wordIndex.put(word, w);
+			for (String state : observationMap.get(word).keySet()) {
+				emissions[w*T + tagIndex.get(state)] = observationMap.get(word).get(state);
+			}
+		}
+		// Convert the exact tables to the requested precision and drop the exact ones
+		if (precision == Precision.FLOAT) {
+			floatTransitions = toFloat(transitions);
+			floatEmissions = toFloat(emissions);
+			transitions = emissions = null;
+		}
+		else if (precision == Precision.FIXED16) {
+			transitionScale = scale(transitions, Double.NEGATIVE_INFINITY);
+			emissionScale = scale(emissions, Viterbi.UNOBSERVED);
+			fixedTransitions = toFixed(transitions, Double.NEGATIVE_INFINITY, transitionScale);
+			fixedEmissions = toFixed(emissions, Viterbi.UNOBSERVED, emissionScale);
+			transitions = emissions = null;
+		}
+
+		// Words without their own row go to the unknown word model first, then the unknown word class
+		if (wordIndex.containsKey(Trainer.UNKNOWN)) {
+			unknownClassScores = new double[T];
+			for (int t = 0; t < T; t++) unknownClassScores[t] = emission(wordIndex.get(Trainer.UNKNOWN), t);
+		}
+	}
+
+	/**
+	 * Converts the table to floats; negative infinity and UNOBSERVED are kept exactly.
+	 */
+	private static float[] toFloat(double[] table){
+		float[] result = new float[table.length];
+		for (int i = 0; i < table.length; i++) result[i] = (float) table[i];
+		return result;
+	}
+
+	/**
+	 * Finds the shared scale for a FIXED16 table, so the largest magnitude score maps to Short.MAX_VALUE.
+	 * The missing value is stored as MISSING instead, so it doesn't take up any of the range.
+	 */
+	private static double scale(double[] table, double missing){
+		double largest = 0;
+		for (double score : table) {
+			if (score != missing) largest = Math.max(largest, Math.abs(score));
+		}
+		return largest == 0 ? 1 : largest / Short.MAX_VALUE;
+	}
+
+	/**
+	 * Converts the table to 16-bit fixed point with the given scale; the missing value becomes MISSING.
+	 */
+	private static short[] toFixed(double[] table, double missing, double scale){
+		short[] result = new short[table.length];
+		for (int i = 0; i < table.length; i++) {
+			result[i] = table[i] == missing ? MISSING : (short) Math.round(table[i] / scale);
+		}
+		return result;
+	}
+
+	/**
+	 * @return	the number of bytes used by the transition and emissions tables
+	 */
+	public long tableBytes(){
+		long scores = (long) tags.length * tags.length + (long) wordIndex.size() * tags.length;
+		if (precision == Precision.FLOAT) return 4 * scores;
+		if (precision == Precision.FIXED16) return 2 * scores;
+		return 8 * scores;
+	}
+
+	/**
+	 * Estimates the memory used by the tag and word indices (the maps from tags and words to their
+	 * indices, and the tag array), from their sizes and typical JVM object sizes. These are the same
+	 * at every precision.
+	 *
+	 * @return	the estimated number of bytes used by the indices
+	 */
+	public long indexBytes(){
+		long bytes = 16 + 8L * tags.length; // tags array; the strings themselves are counted in tagIndex
+		bytes += Trainer.mapBytes(tagIndex.size()) + Trainer.mapBytes(wordIndex.size());
+		for (String tag : tagIndex.keySet()) bytes += Trainer.stringBytes(tag) + BOXED_INTEGER_BYTES;
+		for (String word : wordIndex.keySet()) bytes += Trainer.stringBytes(word) + BOXED_INTEGER_BYTES;
+		return bytes;
+	}
+
+	/**
+	 * Estimates the memory used by the unknown word model's cached score rows. The cache is shared with
+	 * every other decode of the same Trainer, and its rows are full precision at every precision.
+	 *
+	 * @return	the estimated number of bytes used by the unknown word cache, 0 if there is no unknown word model
+	 */
+	public long cacheBytes(){
+		return unknownWords == null ? 0 : unknownWords.cacheBytes();
+	}
+
+	/**
+	 * @return	the estimated number of bytes used by the whole model: tables, indices and the unknown word cache
+	 */
+	public long totalBytes(){
+		return tableBytes() + indexBytes() + cacheBytes();
+	}
+
+	/**
+	 * Adds the tag to the index if it isn't there already.
+	 */
+	private void addTag(String tag, List<String> tagList){
+		if (tagIndex.containsKey(tag)) return;
+		tagIndex.put(tag, tagList.size());
+		tagList.add(tag);
+	}
+
+	/**
+	 * @param tag	the part-of-speech
+	 * @return	the index of the tag, or -1 if the model doesn't have it
+	 */
+	public int tagIndex(String tag){
+		Integer index = tagIndex.get(tag);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * @param word	the observed word
+	 * @return	the emissions row of the word, or -1 if it doesn't have one; use unknownScores then
+	 */
+	public int wordRow(String word){
+		Integer row = wordIndex.get(word);
+		return row == null ? -1 : row;
+	}
+
+	/**
+	 * Gets the emissions scores for a word without its own row, following Viterbi.emissionRow: the
+	 * Trainer's unknown word model scores it if it can, or else the Trainer.UNKNOWN word class does.
+	 * Scores from the unknown word model are its own cached score arrays, which use the same tag indices
+	 * as this model, so they aren't quantized or copied. Tags that model left out are negative infinity
+	 * rather than UNOBSERVED, so decoders skip them (see Viterbi.isPruned).
+	 *
+	 * @param word	the observed word
+	 * @return	array where [t] is the emissions score of tag t, or null if every tag is UNOBSERVED; it may
+	 * 			be shorter than getTagCount(), in which case the tags past its end were left out too.
+	 * 			It is shared, so it must not be changed
+	 */
+	public double[] unknownScores(String word){
+		double[] scores = unknownWords == null ? null : unknownWords.scoreArray(word);
+		return scores == null ? unknownClassScores : scores;
+	}
+
+	/**
+	 * @param s	index of the current tag
+	 * @param t	index of the next tag
+	 * @return	the log transition score s -> t, or negative infinity if there is no such transition
+	 */
+	public double transition(int s, int t){
+		int i = s*tags.length + t;
+		if (precision == Precision.FLOAT) return floatTransitions[i];
+		if (precision == Precision.FIXED16) {
+			return fixedTransitions[i] == MISSING ? Double.NEGATIVE_INFINITY : fixedTransitions[i] * transitionScale;
+		}
+		return transitions[i];
+	}
+
+	/**
+	 * @param row	row of the observed word, as given by wordRow
+	 * @param t		index of the tag
+	 * @return	the emissions score of the tag for the word, or UNOBSERVED if there is none
+	 */
+	public double emission(int row, int t){
+		if (row < 0) return Viterbi.UNOBSERVED;
+		int i = row*tags.length + t;
+		if (precision == Precision.FLOAT) return floatEmissions[i];
+		if (precision == Precision.FIXED16) {
+			return fixedEmissions[i] == MISSING ? Viterbi.UNOBSERVED : fixedEmissions[i] * emissionScale;
+		}
+		return emissions[i];
+	}
+}
@@ -0,0 +1,206 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Decodes many sentences at once with the Viterbi algorithm. Sentences of similar length are grouped,
+ * and every sentence in a group is advanced one position at a time in lockstep. Scores are stored
+ * tag-major (all sentences' scores for one tag next to each other), so each transition score is loaded
+ * once and applied to the whole group. Tags the unknown word model left out of an unseen word are
+ * skipped the same way Viterbi.isPruned describes. With a DOUBLE precision ArrayModel, results are
+ * the same as Viterbi.viterbiAlgorithm with the Trainer's unknown word model.
+ *
+ * @author Jared Cole, Aaron Lee
+ */
+public class BatchDecoder {
+
+	public static final int DEFAULT_BUCKET_WIDTH = 4; // Lengths 0-3, 4-7, 8-11, ... each form one bucket of groups
+	public static final int DEFAULT_MAX_GROUP = 64; // Most sentences decoded together, keeps the score arrays in cache
+
+	private ArrayModel model; // model in array form to decode with
+	private int bucketWidth; // sentences with the same length / bucketWidth share a bucket
+	private int maxGroup; // most sentences in one group
+
+	public BatchDecoder(ArrayModel model){
+		this(model, DEFAULT_BUCKET_WIDTH, DEFAULT_MAX_GROUP);
+	}
+
+	/**
+	 * @param model			model in array form to decode with
+	 * @param bucketWidth	sentences with the same length / bucketWidth are bucketed together
+	 * @param maxGroup		most sentences in one group
+	 */
+	public BatchDecoder(ArrayModel model, int bucketWidth, int maxGroup){
+		if (bucketWidth < 1) throw new IllegalArgumentException("bucketWidth must be at least 1: " + bucketWidth);
+		if (maxGroup < 1) throw new IllegalArgumentException("maxGroup must be at least 1: " + maxGroup);
+		this.model = model;
+		this.bucketWidth = bucketWidth;
+		this.maxGroup = maxGroup;
+	}
+
+	/**
+	 * Runs the Viterbi algorithm on every sentence.
+	 *
+	 * @param sentences	list of String[] observation sequences (input sentences)
+	 * @return	list of the POS tag sequences for the sentences, in the same order
+	 */
+	public List<String[]> decode(final List<String[]> sentences){
+		String[][] results = new String[sentences.size()][];
+
+		// Bucket sentence indices by length
+		Map<Integer, List<Integer>> buckets = new TreeMap<Integer, List<Integer>>();
+		for (int i = 0; i < sentences.size(); i++) {
+			int bucket = sentences.get(i).length / bucketWidth;
+			if (!buckets.containsKey(bucket)) buckets.put(bucket, new ArrayList<Integer>());
+			buckets.get(bucket).add(i);
+		}
+
+		for (List<Integer> bucket : buckets.values()) {
+			// Longest first, so the sentences still going at any position are always a prefix of the group
+			Collections.sort(bucket, new Comparator<Integer>() {
+				public int compare(Integer i1, Integer i2) {
+					return sentences.get(i2).length - sentences.get(i1).length;
+				}
+			});
+			for (int start = 0; start < bucket.size(); start += maxGroup) {
+				List<Integer> group = bucket.subList(start, Math.min(bucket.size(), start + maxGroup));
+				decodeGroup(sentences, group, results);
+			}
+		}
+		return Arrays.asList(results);
+	}
+
+	/**
+	 * Runs the Viterbi algorithm on a group of sentences in lockstep.
+	 *
+	 * @param sentences	all of the sentences being decoded
+	 * @param group		indices of the sentences in this group, longest first
+	 * @param results	array to put the POS tag sequence of each sentence in, at its index
+	 */
+	private void decodeGroup(List<String[]> sentences, List<Integer> group, String[][] results){
+		int B = group.size(); // Sentences in the group
+		int T = model.getTagCount(); // Tags in the model
+		int length = sentences.get(group.get(0)).length; // Longest sentence in the group
+
+		// Score arrays are tag-major: [t*B + b] is the score of tag t for sentence b
+		double[] currScores = new double[T*B];
+		double[] nextScores = new double[T*B];
+		double[] emissions = new double[T*B];
+		int[][] backtrace = new int[length][T*B]; // [i][t*B + b] is the best predecessor of tag t at position i
+		int[] rows = new int[B]; // emissions row of each sentence's current word
+		double[][] unknownScores = new double[B][]; // emissions scores of each current word without a row
+
+		Arrays.fill(currScores, Double.NEGATIVE_INFINITY);
+		int start = model.tagIndex("#");
+		if (start >= 0) Arrays.fill(currScores, start*B, start*B + B, 0D); // Initial state with initial score 0
+
+		int active = B; // Sentences still going, always a prefix of the group
+		for (int i = 0; i < length; i++) {
+			while (sentences.get(group.get(active-1)).length <= i) active--; // Drop sentences that have ended
+
+			// Look up the emissions scores for every active sentence's word at this position
+			for (int b = 0; b < active; b++) {
+				String word = sentences.get(group.get(b))[i];
+				rows[b] = model.wordRow(word);
+				unknownScores[b] = rows[b] < 0 ? model.unknownScores(word) : null; // Unseen word
+			}
+			for (int t = 0; t < T; t++) {
+				for (int b = 0; b < active; b++) {
+					if (unknownScores[b] == null) emissions[t*B + b] = model.emission(rows[b], t);
+					else emissions[t*B + b] = t < unknownScores[b].length ? unknownScores[b][t] : Double.NEGATIVE_INFINITY;
+				}
+				Arrays.fill(nextScores, t*B, t*B + active, Double.NEGATIVE_INFINITY);
+			}
+
+			for (int s = 0; s < T; s++) {
+				for (int t = 0; t < T; t++) {
+					double transition = model.transition(s, t); // Loaded once for the whole group
+					if (transition == Double.NEGATIVE_INFINITY) continue; // No transition s -> t
+					for (int b = 0; b < active; b++) {
+						double currScore = currScores[s*B + b];
+						if (currScore == Double.NEGATIVE_INFINITY) continue; // State s not reached for this sentence
+						// Same expression and order as Viterbi: current score + transition score + emissions score,
+						// which is negative infinity for a pruned tag, so it is never taken
+						double nextScore = currScore + transition + emissions[t*B + b];
+						if (nextScore > nextScores[t*B + b]) {
+							nextScores[t*B + b] = nextScore;
+							backtrace[i][t*B + b] = s;
+						}
+					}
+				}
+			}
+
+			// Sentences whose unseen word left no kept tag reachable are expanded again without pruning, as in Viterbi
+			for (int b = 0; b < active; b++) {
+				if (unknownScores[b] == null || reached(nextScores, b, B, T)) continue;
+				boolean pruned = false;
+				for (int t = 0; t < T; t++) {
+					if (emissions[t*B + b] != Double.NEGATIVE_INFINITY) continue;
+					emissions[t*B + b] = Viterbi.UNOBSERVED; // Pruned tags count as UNOBSERVED instead
+					pruned = true;
+				}
+				if (!pruned) continue; // Nothing was pruned, so there is nothing more to reach
+				for (int s = 0; s < T; s++) {
+					if (currScores[s*B + b] == Double.NEGATIVE_INFINITY) continue; // State s not reached
+					for (int t = 0; t < T; t++) {
+						double transition = model.transition(s, t);
+						if (transition == Double.NEGATIVE_INFINITY) continue; // No transition s -> t
+						double nextScore = currScores[s*B + b] + transition + emissions[t*B + b];
+						if (nextScore > nextScores[t*B + b]) {
+							nextScores[t*B + b] = nextScore;
+							backtrace[i][t*B + b] = s;
+						}
+					}
+				}
+			}
+
+			// Swap score arrays for the next position
+			double[] temp = currScores;
+			currScores = nextScores;
+			nextScores = temp;
+
+			// Backtrace the sentences that end at this position
+			for (int b = active-1; b >= 0 && sentences.get(group.get(b)).length == i+1; b--) {
+				results[group.get(b)] = backtrace(currScores, backtrace, b, B, i+1);
+			}
+		}
+		// Empty sentences have no positions, so give them empty tag sequences
+		for (int b = 0; b < B; b++) {
+			if (results[group.get(b)] == null) results[group.get(b)] = new String[0];
+		}
+	}
+
+	/**
+	 * @return	whether any tag has a score for sentence b of the group
+	 */
+	private static boolean reached(double[] scores, int b, int B, int T){
+		for (int t = 0; t < T; t++) {
+			if (scores[t*B + b] != Double.NEGATIVE_INFINITY) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Finds the best final state of one sentence in the group and follows the backtrace from it.
+	 */
+	private String[] backtrace(double[] finalScores, int[][] backtrace, int b, int B, int length){
+		String[] bestPath = new String[length];
+		double bestScore = Double.NEGATIVE_INFINITY;
+		int state = -1; // Stays -1 if no state was reached, like a null state in Viterbi
+		for (int t = 0; t < model.getTagCount(); t++) {
+			if (finalScores[t*B + b] > bestScore) {
+				bestScore = finalScores[t*B + b];
+				state = t;
+			}
+		}
+		for (int i = length-1; i >= 0 && state >= 0; i--) {
+			bestPath[i] = model.getTags()[state];
+			state = i > 0 ? backtrace[i][state*B + b] : -1;
+		}
+		return bestPath;
+	}
+}
@@ -0,0 +1,71 @@
+/**
+ * Approximate counter for strings in a fixed amount of memory. Estimates are never below the true
+ * count, and only go above it when different strings share cells in every row.
+ *
+ * @author Jared Cole, Aaron Lee
+ */
+public class CountMinSketch {
+	private int[][] counts; // one row of counters per hash function
+	private int width; // number of counters in each row
+
+	/**
+	 * Creates a sketch that fits in roughly the given number of bytes.
+	 *
+	 * @param bytes	memory to use for the counters
+	 * @param depth	number of hash functions (rows); more rows means fewer overestimates
+	 */
+	public CountMinSketch(long bytes, int depth){
+		if (depth < 1) throw new IllegalArgumentException("depth must be at least 1: " + depth);
+		width = (int) Math.max(1, Math.min(Integer.MAX_VALUE - 8, bytes / (4L * depth))); // 4 bytes per int counter
+		counts = new int[depth][width];
+	}
+
+	/**
+	 * @return	the number of bytes used by the counters
+	 */
+	public long sizeInBytes(){
+		return 4L * counts.length * width;
+	}
+
+	/**
+	 * Counts one more occurrence of the given string. Uses a conservative update, only raising
+	 * the counters that are at the current estimate, which keeps overestimates lower.
+	 *
+	 * @param s	the string to count
+	 * @return	the estimated count of the string after adding it
+	 */
+	public int add(String s){
+		int estimate = estimate(s) + 1;
+		for (int row = 0; row < counts.length; row++) {
+			int cell = cell(s, row);
+			if (counts[row][cell] < estimate) counts[row][cell] = estimate;
+		}
+		return estimate;
+	}
+
+	/**
+	 * @param s	the string to look up
+	 * @return	the estimated number of times the string has been added
+	 */
+	public int estimate(String s){
+		int estimate = Integer.MAX_VALUE;
+		for (int row = 0; row < counts.length; row++) {
+			estimate = Math.min(estimate, counts[row][cell(s, row)]);
+		}
+		return estimate;
+	}
+
+	/**
+	 * Hashes the string into a counter of the given row, with a different hash function for each row.
+	 */
+	private int cell(String s, int row){
+		int h = s.hashCode() + row * 0x9E3779B9; // Different seed for each row
+		// Finalizer from MurmurHash3 to spread the bits of String.hashCode
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		h ^= h >>> 16;
+		return (h & Integer.MAX_VALUE) % width;
+	}
+}
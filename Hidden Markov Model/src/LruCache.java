@@ -0,0 +1,131 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded least-recently-used cache that many decodes can use at once. Keys are split by hash across
+ * segments, each an access-ordered LinkedHashMap with its own lock and its own share of the capacity,
+ * so lookups of different words rarely wait on each other. The least recently used entry is dropped
+ * per segment, and the cache never holds more than its capacity.
+ *
+ * @author Jared Cole, Aaron Lee
+ */
+public class LruCache<K, V> {
+
+	public static final int DEFAULT_SEGMENTS = 16; // Default number of independently locked segments
+
+	/**
+	 * One segment of the cache, access-ordered so its least recently used entry is dropped once it is full.
+	 */
+	private static class Segment<K, V> extends LinkedHashMap<K, V> {
+		private static final long serialVersionUID = 1L;
+		private final int capacity; // most entries kept in this segment
+
+		Segment(int capacity){
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest){
+			return size() > capacity;
+		}
+	}
+
+	private final List<Segment<K, V>> segments; // segments of the cache, each guarded by its own lock
+	private final int capacity; // most entries kept in the whole cache
+
+	public int getCapacity(){
+		return capacity;
+	}
+
+	public LruCache(int capacity){
+		this(capacity, DEFAULT_SEGMENTS);
+	}
+
+	/**
+	 * @param capacity		most entries to keep in the whole cache
+	 * @param segmentCount	number of independently locked segments, at most capacity
+	 */
+	public LruCache(int capacity, int segmentCount){
+		if (capacity < 1) throw new IllegalArgumentException("capacity must be at least 1: " + capacity);
+		if (segmentCount < 1) throw new IllegalArgumentException("segmentCount must be at least 1: " + segmentCount);
+		this.capacity = capacity;
+		segmentCount = Math.min(segmentCount, capacity); // Every segment holds at least one entry
+		segments = new ArrayList<Segment<K, V>>();
+		for (int i = 0; i < segmentCount; i++) {
+			// Split the capacity as evenly as possible, so the shares add up to exactly capacity
+			segments.add(new Segment<K, V>(capacity / segmentCount + (i < capacity % segmentCount ? 1 : 0)));
+		}
+	}
+
+	/**
+	 * @return	the segment the key belongs to
+	 */
+	private Segment<K, V> segment(Object key){
+		int h = key.hashCode();
+		h ^= h >>> 16; // Mix the high bits in, so similar keys spread over the segments
+		return segments.get((h & Integer.MAX_VALUE) % segments.size());
+	}
+
+	/**
+	 * @param key	the key to look up
+	 * @return	the cached value, now the most recently used in its segment, or null if there is none
+	 */
+	public V get(K key){
+		Segment<K, V> segment = segment(key);
+		synchronized (segment) {
+			return segment.get(key);
+		}
+	}
+
+	/**
+	 * Caches the value, dropping the least recently used entry of the key's segment if it is full.
+	 *
+	 * @param key	the key
+	 * @param value	the value
+	 */
+	public void put(K key, V value){
+		Segment<K, V> segment = segment(key);
+		synchronized (segment) {
+			segment.put(key, value);
+		}
+	}
+
+	/**
+	 * @return	the number of entries currently cached
+	 */
+	public int size(){
+		int size = 0;
+		for (Segment<K, V> segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * @return	a snapshot of the values currently cached
+	 */
+	public List<V> values(){
+		List<V> values = new ArrayList<V>();
+		for (Segment<K, V> segment : segments) {
+			synchronized (segment) {
+				values.addAll(segment.values());
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Removes every entry from the cache.
+	 */
+	public void clear(){
+		for (Segment<K, V> segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+}
@@ -0,0 +1,128 @@
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds several named TrainedModels side by side, e.g. one per corpus.
+ * Models are trained off to the side and then swapped in with a single atomic put, so decodes that are
+ * already running keep the model they started with and are never paused. A replaced model is no longer
+ * reachable from the registry and is released by the garbage collector once its last reader is done.
+ *
+ * Callers should get the model once per request and use that same model for the whole request.
+ *
+ * @author Jared Cole, Aaron Lee
+ */
+public class ModelRegistry {
+	private final ConcurrentMap<String, TrainedModel> models; // map of model name to its current model
+	private final int maxLength; // longest continuation precomputed by each model's TagGenerator
+	private final ArrayModel.Precision precision; // precision of the ArrayModel each model keeps, null for none
+
+	public int getMaxLength(){
+		return maxLength;
+	}
+	public ArrayModel.Precision getPrecision(){
+		return precision;
+	}
+
+	public ModelRegistry(){ //create empty registry
+		this(TagGenerator.DEFAULT_MAX_LENGTH);
+	}
+
+	/**
+	 * Creates an empty registry whose models precompute continuations up to the given length.
+	 *
+	 * @param maxLength	the longest continuation each model's TagGenerator precomputes
+	 */
+	public ModelRegistry(int maxLength){
+		this(maxLength, null);
+	}
+
+	/**
+	 * Creates an empty registry whose models precompute continuations up to the given length and
+	 * each keep an ArrayModel at the given precision for batch decoding.
+	 *
+	 * @param maxLength	the longest continuation each model's TagGenerator precomputes
+	 * @param precision	precision of the ArrayModel each model keeps, or null to not keep one
+	 */
+	public ModelRegistry(int maxLength, ArrayModel.Precision precision){
+		if (maxLength < 0) throw new IllegalArgumentException("maxLength must not be negative: " + maxLength);
+		models = new ConcurrentHashMap<String, TrainedModel>();
+		this.maxLength = maxLength;
+		this.precision = precision;
+	}
+
+	/**
+	 * Gets the current model registered under the given name.
+	 *
+	 * @param name	the name of the model
+	 * @return	the current model, or null if there is no model with that name
+	 */
+	public TrainedModel get(String name){
+		return models.get(name);
+	}
+
+	/**
+	 * @return	the names of all registered models, in alphabetical order
+	 */
+	public Set<String> names(){
+		return new TreeSet<String>(models.keySet());
+	}
+
+	/**
+	 * Registers an already trained Trainer under the given name, atomically replacing any model
+	 * that was registered under that name before.
+	 *
+	 * @param name		the name of the model
+	 * @param trainer	Trainer that has finished training
+	 * @return	the newly registered model
+	 */
+	public TrainedModel register(String name, Trainer trainer){
+		// Fully build the model, array form included, before publishing it
+		TrainedModel model = new TrainedModel(name, trainer, maxLength, precision);
+		models.put(name, model);
+		return model;
+	}
+
+	/**
+	 * Trains the given Trainer on a corpus found in the inputs/ directory and registers it under
+	 * the corpus name. The model currently registered under that name keeps serving requests
+	 * until training has finished. Corpi must be given in the format "name"-train-tags.txt
+	 * for training tags and "name"-train-sentences.txt for the associated training sentences.
+	 *
+	 * @param corpus	the name of the training corpus
+	 * @param trainer	a new Trainer to train
+	 * @return	the newly registered model
+	 * @throws FileNotFoundException thrown if either training file for the corpus isn't found
+	 * @throws IOException	thrown if input is invalid
+	 */
+	public TrainedModel train(String corpus, Trainer trainer) throws FileNotFoundException, IOException {
+		trainer.fileTrainer("inputs/" + corpus + "-train-tags.txt", "inputs/" + corpus + "-train-sentences.txt");
+		return register(corpus, trainer);
+	}
+
+	/**
+	 * Trains a new default Trainer on a corpus found in the inputs/ directory and registers it
+	 * under the corpus name.
+	 *
+	 * @param corpus	the name of the training corpus
+	 * @return	the newly registered model
+	 * @throws FileNotFoundException thrown if either training file for the corpus isn't found
+	 * @throws IOException	thrown if input is invalid
+	 */
+	public TrainedModel train(String corpus) throws FileNotFoundException, IOException {
+		return train(corpus, new Trainer());
+	}
+
+	/**
+	 * Removes the model registered under the given name; requests already using it are unaffected.
+	 *
+	 * @param name	the name of the model
+	 * @return	the removed model, or null if there was none
+	 */
+	public TrainedModel remove(String name){
+		return models.remove(name);
+	}
+}
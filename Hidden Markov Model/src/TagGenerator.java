@@ -0,0 +1,152 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates the most likely parts-of-speech that follow a tagged sentence. The best continuation of every
+ * length (up to a limit) from every tag is precomputed once from the transitions, so generating n tags after
+ * decoding is a table lookup and a walk instead of n more full steps of the Viterbi algorithm.
+ *
+ * @author Jared Cole, Aaron Lee
+ */
+public class TagGenerator {
+
+	public static final int DEFAULT_MAX_LENGTH = 50; // Default longest continuation kept in the tables
+
+	private Map<String, Map<String, Double>> transitions; // the transitions the tables were built from
+	private int maxLength; // longest continuation the tables hold
+	private String[] tags; // every tag in the transitions, indexed
+	private Map<String, Integer> tagIndex; // map of tag to its index in tags
+	private double[][] continuationScores; // [k][s] is the best log score of k more tags after tag s
+	private int[][] continuationNext; // [k][s] is the index of the first tag of that best continuation
+
+	public int getMaxLength(){
+		return maxLength;
+	}
+
+	/**
+	 * Builds the continuation tables for the given transitions.
+	 *
+	 * @param transitions	the transition map for parts-of-speech transitions, as given by the Trainer
+	 * @param maxLength		the longest continuation to precompute; longer requests fall back to Viterbi
+	 */
+	public TagGenerator(Map<String, Map<String, Double>> transitions, int maxLength){
+		if (maxLength < 0) throw new IllegalArgumentException("maxLength must not be negative: " + maxLength);
+		this.transitions = transitions;
+		this.maxLength = maxLength;
+
+		// Index every tag that appears either as the start or the end of a transition
+		tagIndex = new HashMap<String, Integer>();
+		List<String> tagList = new ArrayList<String>();
+		for (String state : transitions.keySet()) {
+			if (!tagIndex.containsKey(state)) {
+				tagIndex.put(state, tagList.size());
+				tagList.add(state);
+			}
+			for (String nextState : transitions.get(state).keySet()) {
+				if (!tagIndex.containsKey(nextState)) {
+					tagIndex.put(nextState, tagList.size());
+					tagList.add(nextState);
+				}
+			}
+		}
+		tags = tagList.toArray(new String[tagList.size()]);
+
+		// Log transition scores as a matrix, with negative infinity where there is no transition
+		double[][] logTransitions = new double[tags.length][tags.length];
+		for (int s = 0; s < tags.length; s++) {
+			for (int t = 0; t < tags.length; t++) logTransitions[s][t] = Double.NEGATIVE_INFINITY;
+			if (!transitions.containsKey(tags[s])) continue; // No transitions out of this tag
+			for (String nextState : transitions.get(tags[s]).keySet()) {
+				logTransitions[s][tagIndex.get(nextState)] = Math.log(transitions.get(tags[s]).get(nextState));
+			}
+		}
+
+		// Max-product recursion: the best k-step continuation from s is the best transition s -> t
+		// followed by the best (k-1)-step continuation from t
+		continuationScores = new double[maxLength+1][tags.length]; // Row 0 is all zeros, the empty continuation
+		continuationNext = new int[maxLength+1][tags.length];
+		for (int k = 1; k <= maxLength; k++) {
+			for (int s = 0; s < tags.length; s++) {
+				double bestScore = Double.NEGATIVE_INFINITY;
+				int bestNext = -1; // Stays -1 if no continuation of this length exists from s
+				for (int t = 0; t < tags.length; t++) {
+					double score = logTransitions[s][t] + continuationScores[k-1][t];
+					if (score > bestScore) {
+						bestScore = score;
+						bestNext = t;
+					}
+				}
+				continuationScores[k][s] = bestScore;
+				continuationNext[k][s] = bestNext;
+			}
+		}
+	}
+
+	/**
+	 * Decodes the given observations with the Viterbi algorithm, then appends the n most likely
+	 * parts-of-speech to follow them. Gives the same result as Viterbi.viterbiGenerate.
+	 *
+	 * @param observations	the String[] containing as sequence of observations (input sentence)
+	 * @param emissions		the emissions map for words and parts-of-speech to observation scores
+	 * @param n				the number of additional most-likely POS tags to generate
+	 * @return	String[] containing the sequence of parts-of-speech tags as found by Viterbi decoding and generation
+	 */
+	public String[] generate(String[] observations, Map<String, Map<String, Double>> emissions, int n){
+		return generate(observations, emissions, null, n);
+	}
+
+	/**
+	 * Decodes the given observations with the Viterbi algorithm, scoring words missing from the emissions
+	 * map with the given unknown word model, then appends the n most likely parts-of-speech to follow them.
+	 * Gives the same result as Viterbi.viterbiGenerate.
+	 *
+	 * @param observations	the String[] containing as sequence of observations (input sentence)
+	 * @param emissions		the emissions map for words and parts-of-speech to observation scores
+	 * @param unknownWords	the emissions model for words missing from emissions, or null to use UNOBSERVED
+	 * @param n				the number of additional most-likely POS tags to generate
+	 * @return	String[] containing the sequence of parts-of-speech tags as found by Viterbi decoding and generation
+	 * @throws IllegalArgumentException	thrown if n is negative
+	 */
+	public String[] generate(String[] observations, Map<String, Map<String, Double>> emissions,
+			UnknownWordModel unknownWords, int n){
+		if (n < 0) throw new IllegalArgumentException("n must not be negative: " + n);
+		// Tables don't reach that far, so run the full generation instead
+		if (n > maxLength) return Viterbi.viterbiGenerate(observations, transitions, emissions, unknownWords, n);
+
+		// Array to hold the decoded tags followed by the generated tags
+		String[] bestPath = new String[observations.length+n];
+
+		// Run the forward pass over the observations only; generation is handled by the tables
+		List<Map<String, String>> backtrace = new ArrayList<Map<String, String>>();
+		Map<String, Double> currScores = Viterbi.viterbiForward(observations, transitions, emissions, unknownWords,
+				backtrace);
+
+		// The best final state is the one with the best score once its best n-step continuation is added
+		double bestScore = Double.NEGATIVE_INFINITY;
+		String backtraceState = null;
+		for (String finalState : currScores.keySet()) {
+			double score = currScores.get(finalState) + continuationScores[n][tagIndex.get(finalState)];
+			if (score > bestScore) {
+				backtraceState = finalState;
+				bestScore = score;
+			}
+		}
+		// No final state can be continued n times, so let the full generation decide what to do
+		if (backtraceState == null) return Viterbi.viterbiGenerate(observations, transitions, emissions, unknownWords, n);
+
+		// Walk the continuation forward from the best final state
+		int state = tagIndex.get(backtraceState);
+		for (int k = n; k > 0; k--) {
+			state = continuationNext[k][state];
+			bestPath[observations.length+n-k] = tags[state];
+		}
+		// Then backtrace the observed part as usual
+		for (int i = observations.length-1; i >= 0; i--) {
+			bestPath[i] = backtraceState;
+			backtraceState = backtrace.get(i).get(backtraceState);
+		}
+		return bestPath;
+	}
+}
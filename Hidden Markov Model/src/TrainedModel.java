@@ -0,0 +1,67 @@
+/**
+ * A fully trained model for one corpus: the Trainer with its maps and the TagGenerator built from them,
+ * and optionally an ArrayModel at a chosen precision for decoding with a BatchDecoder.
+ * A TrainedModel is never modified once it has been built, so any number of decodes can read it at once.
+ *
+ * @author Jared Cole, Aaron Lee
+ */
+public class TrainedModel {
+	private final String name; // name the model is registered under, usually the corpus name
+	private final Trainer trainer; // trained maps for the Viterbi algorithm
+	private final TagGenerator generator; // continuation tables for generating tags
+	private final ArrayModel arrayModel; // array form of the trainer's maps for batch decoding, null if not kept
+
+	public String getName(){
+		return name;
+	}
+	public Trainer getTrainer(){
+		return trainer;
+	}
+	public TagGenerator getGenerator(){
+		return generator;
+	}
+	public ArrayModel getArrayModel(){
+		return arrayModel;
+	}
+
+	/**
+	 * Wraps an already trained Trainer; the trainer must not be trained any further afterwards.
+	 *
+	 * @param name		the name of the model
+	 * @param trainer	Trainer that has finished training
+	 */
+	public TrainedModel(String name, Trainer trainer){
+		this(name, trainer, TagGenerator.DEFAULT_MAX_LENGTH);
+	}
+
+	/**
+	 * Wraps an already trained Trainer; the trainer must not be trained any further afterwards.
+	 *
+	 * @param name		the name of the model
+	 * @param trainer	Trainer that has finished training
+	 * @param maxLength	the longest continuation the TagGenerator precomputes
+	 */
+	public TrainedModel(String name, Trainer trainer, int maxLength){
+		this(name, trainer, maxLength, null);
+	}
+
+	/**
+	 * Wraps an already trained Trainer and builds an ArrayModel from it at the given precision, kept
+	 * alongside the Trainer's maps; the trainer must not be trained any further afterwards.
+	 *
+	 * @param name		the name of the model
+	 * @param trainer	Trainer that has finished training
+	 * @param maxLength	the longest continuation the TagGenerator precomputes
+	 * @param precision	precision of the ArrayModel to keep, or null to not keep one
+	 */
+	public TrainedModel(String name, Trainer trainer, int maxLength, ArrayModel.Precision precision){
+		this.name = name;
+		this.trainer = trainer;
+		this.generator = new TagGenerator(trainer.getTransitions(), maxLength);
+		this.arrayModel = precision == null ? null : new ArrayModel(trainer, precision);
+	}
+
+	public String toString(){
+		return "[" + name + "]";
+	}
+}
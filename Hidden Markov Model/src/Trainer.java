@@ -2,9 +2,12 @@ import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 
 
@@ -15,10 +18,33 @@ import java.util.Set;
  * @author Jared Cole, Aaron Lee
  */
 public class Trainer{
+	public static final String UNKNOWN = "<unk>"; // Word class that rare words are folded into in bounded mode
+	public static final int DEFAULT_MIN_COUNT = 2; // Default count a word needs to be kept in bounded mode
+	public static final long BYTES_PER_WORD = 480; // Planned memory for one kept word across all maps and sets
+	public static final int SKETCH_DEPTH = 4; // Number of hash functions in the count-min sketch
+	// Typical 64-bit JVM object sizes, used to estimate memory from the structures that were built
+	private static final long SET_ENTRY_BYTES = 40; // HashSet/HashMap node plus its table slot
+	private static final long HEAP_ENTRY_BYTES = 40; // map entry object, boxed count and heap slot
+	private static final long BOXED_DOUBLE_BYTES = 16; // Double value in a map
+	// Smallest budget that covers the fixed costs of bounded training: a one-counter-per-row sketch, the empty
+	// vocabulary, seen word set and observed map, and the "#" and UNKNOWN entries every model has
+	public static final long MIN_MEMORY_BUDGET = 4L * SKETCH_DEPTH + 3 * mapBytes(0)
+			+ 2 * (2 * stringBytes(UNKNOWN) + mapBytes(1) + BOXED_DOUBLE_BYTES);
+	
 	Map<String, Map<String, Double>> transitions; // map of string to map, where string is a POS and the map is of next POS and probabilities
 	Map<String, Map<String, Double>> observed; // map of string to map where string is a word, and the map is of POS and probabilities
 	Map<Pair, Map<String, Double>> trigram; // map of a pair of strings (POS 1 and POS 2) to a map mapping POS 3 to the probability
 	Map<String, Double> unigram; // map of a string (POS) to the probability that a randomly selected POS is that one
+	UnknownWordModel unknownWords; // emissions model for words that never appear in the training sentences
+	
+	long memoryBudget; // bytes allowed for word counts in bounded mode, 0 for exact training
+	int minCount; // number of times a word must be seen to get its own emissions in bounded mode
+	Set<String> vocabulary; // words kept in bounded mode, only while training
+	int keptWords; // number of words kept in bounded mode
+	long sketchBytes; // memory used by the count-min sketch in bounded mode
+	long selectionBytes; // estimated memory used while choosing the words to keep, sketch included
+	long trainingBytes; // estimated memory used by the kept words' counts while training
+	long foldedTokens; // number of tokens folded into UNKNOWN in bounded mode
 	
 	public Map<String, Map<String, Double>> getTransitions(){
 		return transitions;
@@ -32,12 +58,153 @@ public class Trainer{
 	public Map<String, Double> getUnigram(){
 		return unigram;
 	}
+	public UnknownWordModel getUnknownWords(){
+		return unknownWords;
+	}
+	public long getMemoryBudget(){
+		return memoryBudget;
+	}
+	public int getMinCount(){
+		return minCount;
+	}
 	
 	public Trainer(){ //create empty hashmaps
 		transitions = new HashMap<String, Map<String, Double>>();
 		observed = new HashMap<String, Map<String, Double>>();
 		trigram = new HashMap<Pair, Map<String, Double>>();
 		unigram = new HashMap<String, Double>();
+		unknownWords = new UnknownWordModel();
+	}
+	
+	/**
+	 * Creates a Trainer for bounded-memory training. Words seen fewer than minCount times, and any words
+	 * beyond what fits in the memory budget, are folded into the UNKNOWN word class instead of getting
+	 * their own emissions. An eighth of the budget goes to the unknown word model's suffix trie.
+	 * 
+	 * @param memoryBudget	bytes allowed for word counts, including the sketch used to find frequent words
+	 * 						and the suffix trie
+	 * @param minCount		number of times a word must be seen to get its own emissions
+	 */
+	public Trainer(long memoryBudget, int minCount){
+		this();
+		if (memoryBudget < MIN_MEMORY_BUDGET) {
+			throw new IllegalArgumentException("memoryBudget must be at least " + MIN_MEMORY_BUDGET + ": " + memoryBudget);
+		}
+		if (minCount < 1) throw new IllegalArgumentException("minCount must be at least 1: " + minCount);
+		this.memoryBudget = memoryBudget;
+		this.minCount = minCount;
+		unknownWords = new UnknownWordModel(UnknownWordModel.DEFAULT_CACHE_SIZE, Math.max(1, memoryBudget / 8));
+	}
+	
+	/**
+	 * @return	whether this Trainer folds rare words into the UNKNOWN word class
+	 */
+	public boolean isBounded(){
+		return memoryBudget > 0;
+	}
+	
+	/**
+	 * Gets the estimated peak memory of bounded training: the larger of the word selection (sketch and
+	 * chosen words) and the main pass (chosen words and their counts, plus the suffix trie). The estimate
+	 * is worked out from the sizes of the structures actually built, using typical JVM object sizes; it
+	 * isn't a heap measurement.
+	 * 
+	 * @return	the estimated peak bytes used for word counts during bounded training
+	 */
+	public long getPeakMemoryEstimate(){
+		return Math.max(selectionBytes, trainingBytes + unknownWords.sizeInBytes());
+	}
+	
+	/**
+	 * @return	whether the estimated peak memory of bounded training went over the memory budget
+	 */
+	public boolean isOverBudget(){
+		return isBounded() && getPeakMemoryEstimate() > memoryBudget;
+	}
+	
+	/**
+	 * @return	a one-line summary of the memory used by bounded training
+	 */
+	public String getMemoryReport(){
+		if (!isBounded()) return "exact training, " + observed.size() + " words";
+		return (isOverBudget() ? "OVER BUDGET: " : "") // The fixed costs and the tags alone can be more than a tiny budget
+				+ "budget " + memoryBudget + " bytes, estimated peak " + getPeakMemoryEstimate() + " bytes (selection "
+				+ selectionBytes + " bytes with a " + sketchBytes + " byte sketch, training " + trainingBytes + " bytes plus a "
+				+ unknownWords.sizeInBytes() + " byte suffix trie of " + unknownWords.getNodeCount() + " nodes), "
+				+ keptWords + " words kept, " + foldedTokens + " tokens folded into " + UNKNOWN;
+	}
+	
+	/**
+	 * Finds the words to keep in bounded mode. A quarter of the memory budget goes to a count-min sketch
+	 * that counts every word in the training sentences; a second pass then keeps the words with the
+	 * highest estimated counts, at least minCount, in a min-heap holding as many words as fit in what is
+	 * left once the suffix trie's share is set aside.
+	 * 
+	 * @param wordPath		path of the file with the training sentences
+	 * @throws FileNotFoundException thrown if the file located at the given path isn't found
+	 * @throws IOException	thrown if input is invalid
+	 */
+	private void findVocabulary(String wordPath) throws FileNotFoundException, IOException {
+		CountMinSketch sketch = new CountMinSketch(memoryBudget / 4, SKETCH_DEPTH);
+		sketchBytes = sketch.sizeInBytes();
+		// Words that fit in the rest, leaving room for the suffix trie that is built alongside them
+		long maxWords = Math.max(0, (memoryBudget - sketchBytes - unknownWords.getMaxBytes()) / BYTES_PER_WORD);
+		
+		// First pass: count every word in the sketch
+		BufferedReader wordInput = new BufferedReader(new FileReader(wordPath));
+		String currentWords;
+		while((currentWords = wordInput.readLine()) != null){
+			for(String word : currentWords.toLowerCase().split("\\s+")) sketch.add(word);
+		}
+		wordInput.close();
+		
+		// Second pass: keep the maxWords most frequent words, with the least frequent kept word on top of the heap
+		PriorityQueue<Map.Entry<String, Integer>> heap = new PriorityQueue<Map.Entry<String, Integer>>(11,
+				new Comparator<Map.Entry<String, Integer>>() {
+			public int compare(Map.Entry<String, Integer> e1, Map.Entry<String, Integer> e2) {
+				return e1.getValue() - e2.getValue();
+			}
+		});
+		vocabulary = new HashSet<String>(); // Words currently in the heap
+		wordInput = new BufferedReader(new FileReader(wordPath));
+		while((currentWords = wordInput.readLine()) != null){
+			for(String word : currentWords.toLowerCase().split("\\s+")){
+				if(vocabulary.contains(word)) continue; // Already kept
+				int count = sketch.estimate(word);
+				if(count < minCount || maxWords == 0) continue; // Too rare, or no room at all
+				if(heap.size() < maxWords){ // Still room
+					heap.add(new AbstractMap.SimpleEntry<String, Integer>(word, count));
+					vocabulary.add(word);
+				}
+				else if(count > heap.peek().getValue()){ // More frequent than the least frequent kept word
+					vocabulary.remove(heap.poll().getKey());
+					heap.add(new AbstractMap.SimpleEntry<String, Integer>(word, count));
+					vocabulary.add(word);
+				}
+			}
+		}
+		wordInput.close();
+		keptWords = vocabulary.size();
+		
+		// Sketch, plus each kept word in both the heap and the set
+		selectionBytes = sketchBytes;
+		for(String word : vocabulary) selectionBytes += stringBytes(word) + HEAP_ENTRY_BYTES + SET_ENTRY_BYTES;
+	}
+	
+	/**
+	 * @return	estimated bytes of a String, including its character array
+	 */
+	static long stringBytes(String s){
+		return 40 + 2L * s.length();
+	}
+	
+	/**
+	 * @return	estimated bytes of a HashMap with the given number of entries, not counting keys and values
+	 */
+	static long mapBytes(int entries){
+		int capacity = 16; // HashMap default, doubled whenever it is more than 3/4 full
+		while(capacity * 3 / 4 < entries) capacity *= 2;
+		return 48 + 8L * capacity + SET_ENTRY_BYTES * entries;
 	}
 	
 	/**
@@ -50,6 +217,8 @@ public class Trainer{
 	 * @throws IOException	thrown if input is invalid
 	 */
 	public void fileTrainer(String POSPath, String wordPath) throws FileNotFoundException, IOException {
+		if(isBounded()) findVocabulary(wordPath); // In bounded mode, first find which words to keep
+		
 		// Initialize sets and maps to hold counts (which later are used to generate probabilities)
 		Set<String> seenWords = new HashSet<String>(); // Used to remember which words have already been seen
 		
@@ -70,6 +239,11 @@ public class Trainer{
 			for(int i = 0; i < tagArray.length;i++){
 				word = wordArray[i];
 				tag = tagArray[i];
+				if(vocabulary != null && !vocabulary.contains(word)){ // Rare word in bounded mode
+					unknownWords.add(word, tag); // Rare words are what unseen words look like
+					word = UNKNOWN; // Count it towards the unknown word class instead
+					foldedTokens++;
+				}
 			
 				if(i == 0) { // if the first word in the sentence
 					if(!seenWords.contains("#")) { // putting the # in so the first word can be considered properly
@@ -114,6 +288,8 @@ public class Trainer{
 					if(observed.get(word).containsKey(tag))observed.get(word).put(tag, observed.get(word).get(tag) + 1);
 					else observed.get(word).put(tag, 1.0);
 				} else { // If word has not been seen
+					// The first time each word is seen stands in for words that are never seen (folded words were added above)
+					if(!word.equals(UNKNOWN)) unknownWords.add(word, tag);
 					seenWords.add(word);
 					observed.put(word, new HashMap<String,Double>());
 					observed.get(word).put(tag, 1.0);
@@ -207,5 +383,19 @@ public class Trainer{
 		for(String pos : allPOS.keySet()){
 			unigram.put(pos, allPOS.get(pos) / total);
 		}
+		
+		// Finally turn the suffix counts into emissions scores for unseen words
+		unknownWords.finish(unigram, total);
+		
+		if(isBounded()){
+			// Kept words in the vocabulary set, plus the seen word set and the observed map holding their counts
+			trainingBytes = mapBytes(keptWords) + mapBytes(seenWords.size()) + mapBytes(observed.size());
+			for(String observation : observed.keySet()){
+				trainingBytes += 2 * stringBytes(observation) // Same word in vocabulary and observed (or UNKNOWN); seenWords shares it
+						+ mapBytes(observed.get(observation).size())
+						+ BOXED_DOUBLE_BYTES * observed.get(observation).size();
+			}
+			vocabulary = null; // Only needed while training; observed has the words from here on
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,312 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Emissions model for out-of-vocabulary words, built from word shapes and suffixes while the Trainer
+ * reads the training files. Tag counts are stored in a suffix trie: the first level is the shape of the
+ * word (digits, hyphens, letters), then one level per character read from the end of the word.
+ * An unseen word gets a tag distribution smoothed down its path in the trie, and tags that are very
+ * unlikely are left out, so the decoders don't expand them at all (see Viterbi.isPruned).
+ * The trie can be given a memory limit, after which words only count towards the suffixes it already has.
+ * Computed distributions are kept, both as maps and as arrays, in a least-recently-used cache of fixed
+ * size that many decodes can read at once (see LruCache).
+ *
+ * @author Jared Cole, Aaron Lee
+ */
+public class UnknownWordModel {
+
+	public static final int MAX_SUFFIX = 5; // Longest suffix stored in the trie
+	public static final double PRUNE_RATIO = 0.001; // Tags less likely than this times the best tag are left out
+	public static final int DEFAULT_CACHE_SIZE = 10000; // Default number of distributions kept in the cache
+	// Typical 64-bit JVM object sizes, used to keep track of the memory used by the trie
+	private static final long NODE_BYTES = 80; // Node object with its three empty arrays
+	private static final long CHILD_BYTES = 6; // one char and one reference in the parent's arrays
+	private static final long COUNT_BYTES = 4; // one int in a node's counts
+	private static final long SCORES_BYTES = 24; // Scores object holding the two forms
+	private static final long BOXED_DOUBLE_BYTES = 16; // Double value in a map
+
+	/**
+	 * The emissions scores of one unseen word in both forms the decoders read: a map for the Viterbi
+	 * algorithm and an array for ArrayModels.
+	 */
+	private static class Scores {
+		final Map<String, Double> map; // unmodifiable map of POS to emissions score, pruned tags left out
+		final double[] array; // [t] is the emissions score of tags[t], negative infinity if pruned
+		final long bytes; // estimated memory of this cache entry, its word included
+
+		Scores(String word, Map<String, Double> map, double[] array){
+			this.map = map;
+			this.array = array;
+			bytes = SCORES_BYTES + Trainer.stringBytes(word) + Trainer.mapBytes(map.size())
+					+ BOXED_DOUBLE_BYTES * map.size() + 16 + 8L * array.length;
+		}
+	}
+
+	/**
+	 * One node of the suffix trie, with tag counts for every word that ends with its suffix.
+	 * Children are kept in sorted arrays instead of maps to keep the trie compact.
+	 */
+	private static class Node {
+		char[] keys = new char[0]; // sorted characters of the children
+		Node[] children = new Node[0]; // child for each character in keys
+		int[] counts = new int[0]; // [t] is the count of tag t, grown as new tags are seen
+		int total; // sum of counts
+
+		/**
+		 * @return	the child for the character, or null if there is none
+		 */
+		Node child(char key){
+			int i = Arrays.binarySearch(keys, key);
+			return i >= 0 ? children[i] : null;
+		}
+
+		/**
+		 * @return	the child for the character, adding it first if there is none
+		 */
+		Node addChild(char key){
+			int i = Arrays.binarySearch(keys, key);
+			if (i >= 0) return children[i];
+			i = -(i + 1); // Insertion point, keeps keys sorted
+			char[] newKeys = new char[keys.length + 1];
+			Node[] newChildren = new Node[children.length + 1];
+			System.arraycopy(keys, 0, newKeys, 0, i);
+			System.arraycopy(children, 0, newChildren, 0, i);
+			System.arraycopy(keys, i, newKeys, i + 1, keys.length - i);
+			System.arraycopy(children, i, newChildren, i + 1, children.length - i);
+			newKeys[i] = key;
+			newChildren[i] = new Node();
+			keys = newKeys;
+			children = newChildren;
+			return newChildren[i];
+		}
+
+		void increment(int tag){
+			if (tag >= counts.length) counts = Arrays.copyOf(counts, tag + 1);
+			counts[tag]++;
+			total++;
+		}
+
+		int count(int tag){
+			return tag < counts.length ? counts[tag] : 0;
+		}
+	}
+
+	private Node root; // counts for every word added, regardless of shape or suffix
+	private List<String> tags; // every tag seen, indexed
+	private Map<String, Integer> tagIndex; // map of tag to its index in tags
+	private double[] logTagProbabilities; // [t] is the log probability of tag t over all tokens, set by finish
+	private double logUnseenWord; // log probability of seeing one particular unseen word, set by finish
+	private double theta; // smoothing weight given to the shorter suffix, set by finish
+	private LruCache<String, Scores> cache; // map of word to its computed emissions scores
+	private long maxBytes; // most memory the trie may use
+	private long bytes; // estimated memory used by the trie
+	private int nodes; // number of nodes in the trie, root included
+
+	public long getMaxBytes(){
+		return maxBytes;
+	}
+	public int getNodeCount(){
+		return nodes;
+	}
+	public List<String> getTags(){
+		return Collections.unmodifiableList(tags);
+	}
+
+	public UnknownWordModel(){
+		this(DEFAULT_CACHE_SIZE, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @param cacheSize	most computed distributions to keep in the cache
+	 * @param maxBytes	most memory the trie may use; once it is reached, no more suffixes are added
+	 */
+	public UnknownWordModel(int cacheSize, long maxBytes){
+		if (cacheSize < 1) throw new IllegalArgumentException("cacheSize must be at least 1: " + cacheSize);
+		if (maxBytes <= 0) throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+		root = new Node();
+		nodes = 1;
+		bytes = NODE_BYTES;
+		this.maxBytes = maxBytes;
+		tags = new ArrayList<String>();
+		tagIndex = new HashMap<String, Integer>();
+		cache = new LruCache<String, Scores>(cacheSize);
+	}
+
+	/**
+	 * Gets the shape of a word as one character: which of digits, hyphens and letters it contains.
+	 * Capitalization isn't part of the shape because words are lowercased before training and decoding.
+	 *
+	 * @param word	the word
+	 * @return	a character unique to the shape
+	 */
+	public static char shape(String word){
+		int shape = 0;
+		for (int i = 0; i < word.length(); i++) {
+			char c = word.charAt(i);
+			if (Character.isDigit(c)) shape |= 1;
+			else if (c == '-') shape |= 2;
+			else if (Character.isLetter(c)) shape |= 4;
+		}
+		return (char) ('0' + shape);
+	}
+
+	/**
+	 * Gets the estimated memory used by the trie, from the number of nodes, children and counts
+	 * it holds and typical JVM object sizes. The cache isn't included.
+	 *
+	 * @return	the estimated number of bytes used by the trie
+	 */
+	public long sizeInBytes(){
+		return bytes;
+	}
+
+	/**
+	 * Counts the tag for the word's shape and each of its suffixes. Called by the Trainer while reading
+	 * the training files, for words that are representative of unseen words. Once the trie is at its
+	 * memory limit, the word stops at the first suffix that would need more memory.
+	 *
+	 * @param word	the word, as it appears in the training sentences (lowercased)
+	 * @param tag	the tag the word was seen with
+	 */
+	public void add(String word, String tag){
+		if (!tagIndex.containsKey(tag)) {
+			tagIndex.put(tag, tags.size());
+			tags.add(tag);
+		}
+		int t = tagIndex.get(tag);
+		if (bytes + growth(root, t) > maxBytes) return; // No room for a new tag at all
+		bytes += growth(root, t);
+		root.increment(t);
+		Node node = step(root, shape(word), t);
+		for (int i = word.length()-1; node != null && i >= Math.max(0, word.length() - MAX_SUFFIX); i--) {
+			node = step(node, word.charAt(i), t); // Read the suffix from the last character backwards
+		}
+	}
+
+	/**
+	 * Counts the tag in the node's child for the key, adding the child first if there is none.
+	 *
+	 * @return	the child, or null if counting there would take the trie past maxBytes
+	 */
+	private Node step(Node node, char key, int t){
+		Node child = node.child(key);
+		long needed = child == null ? NODE_BYTES + CHILD_BYTES + COUNT_BYTES * (t + 1) : growth(child, t);
+		if (bytes + needed > maxBytes) return null; // Full, the shorter suffixes counted so far have to do
+		if (child == null) {
+			child = node.addChild(key);
+			nodes++;
+		}
+		child.increment(t);
+		bytes += needed;
+		return child;
+	}
+
+	/**
+	 * @return	the bytes the node's counts grow by when tag t is counted
+	 */
+	private static long growth(Node node, int t){
+		return COUNT_BYTES * Math.max(0, t + 1 - node.counts.length);
+	}
+
+	/**
+	 * Finishes the model once training is done. Emissions scores are P(tag | suffix) / P(tag) * P(unseen word),
+	 * which is P(unseen word | tag), on the same scale as the Trainer's scores for known words.
+	 *
+	 * @param unigram		the Trainer's map of POS to its probability over all tokens
+	 * @param totalTokens	the number of tokens in the training sentences
+	 */
+	public void finish(Map<String, Double> unigram, double totalTokens){
+		logTagProbabilities = new double[tags.size()];
+		for (int t = 0; t < tags.size(); t++) logTagProbabilities[t] = Math.log(unigram.get(tags.get(t)));
+		logUnseenWord = -Math.log(totalTokens); // As likely as a word seen once
+
+		// Smooth with the standard deviation of the tag probabilities, as in the TnT tagger
+		double mean = 1.0 / Math.max(1, tags.size());
+		double variance = 0;
+		for (int t = 0; t < tags.size(); t++) {
+			double p = (double) root.count(t) / root.total;
+			variance += (p - mean) * (p - mean);
+		}
+		theta = Math.sqrt(variance / Math.max(1, tags.size() - 1));
+		cache.clear(); // Anything cached was computed before the model was finished
+	}
+
+	/**
+	 * Gets the emissions scores of an unseen word, from the cache if it has been computed already.
+	 *
+	 * @param word	the unseen word
+	 * @return	unmodifiable map of POS to emissions score, leaving out tags that are too unlikely,
+	 * 			or null if the model hasn't been trained
+	 */
+	public Map<String, Double> scores(String word){
+		Scores scores = lookup(word);
+		return scores == null ? null : scores.map;
+	}
+
+	/**
+	 * Gets the emissions scores of an unseen word in array form, from the cache if it has been computed already.
+	 *
+	 * @param word	the unseen word
+	 * @return	array where [t] is the emissions score of the tag at index t of getTags(), or negative infinity
+	 * 			if the tag is too unlikely; null if the model hasn't been trained. It is shared, so it must not be changed
+	 */
+	public double[] scoreArray(String word){
+		Scores scores = lookup(word);
+		return scores == null ? null : scores.array;
+	}
+
+	/**
+	 * @return	the estimated number of bytes used by the distributions currently cached
+	 */
+	public long cacheBytes(){
+		long bytes = 0;
+		for (Scores scores : cache.values()) bytes += scores.bytes;
+		return bytes;
+	}
+
+	/**
+	 * Gets both forms of the word's scores, computing and caching them if they aren't cached.
+	 */
+	private Scores lookup(String word){
+		if (root.total == 0 || logTagProbabilities == null) return null; // Not trained, nothing to go off of
+		Scores scores = cache.get(word);
+		if (scores != null) return scores;
+		scores = computeScores(word); // Outside the lock; two decodes may compute the same word, with the same result
+		cache.put(word, scores);
+		return scores;
+	}
+
+	/**
+	 * Computes P(tag | shape, suffix) by walking down the word's path in the trie, mixing each node's
+	 * counts with the estimate from the shorter suffix above it, then turns it into emissions scores.
+	 */
+	private Scores computeScores(String word){
+		Map<String, Double> scores = new HashMap<String, Double>();
+		double[] array = new double[tags.size()];
+		double[] probabilities = new double[tags.size()];
+		for (int t = 0; t < tags.size(); t++) probabilities[t] = (double) root.count(t) / root.total;
+		Node node = root.child(shape(word));
+		for (int i = word.length()-1; node != null; i--) {
+			for (int t = 0; t < tags.size(); t++) {
+				probabilities[t] = (node.count(t) + theta * probabilities[t]) / (node.total + theta);
+			}
+			node = i >= Math.max(0, word.length() - MAX_SUFFIX) ? node.child(word.charAt(i)) : null;
+		}
+
+		double best = 0;
+		for (double p : probabilities) best = Math.max(best, p);
+		for (int t = 0; t < tags.size(); t++) {
+			if (probabilities[t] < PRUNE_RATIO * best || probabilities[t] == 0) { // Pruned, left out
+				array[t] = Double.NEGATIVE_INFINITY;
+				continue;
+			}
+			array[t] = Math.log(probabilities[t]) - logTagProbabilities[t] + logUnseenWord;
+			scores.put(tags.get(t), array[t]);
+		}
+		return new Scores(word, Collections.unmodifiableMap(scores), array);
+	}
+}
@@ -27,45 +27,31 @@ public class Viterbi {
 	 */
 	public static String[] viterbiAlgorithm(String[] observations, Map<String, Map<String, Double>> transitions,
 			Map<String, Map<String, Double>> emissions){
+		return viterbiAlgorithm(observations, transitions, emissions, null);
+	}
+	
+	/**
+	 * Runs the Viterbi algorithm on the given input sequence of observations given as a String[],
+	 * and returns the corresponding parts-of-speech as a String[], scoring words missing from
+	 * the emissions map with the given unknown word model.
+	 * 
+	 * @param observations	the String[] containing as sequence of observations (input sentence)
+	 * @param transitions	the transition map for parts-of-speech transitions to their transition scores
+	 * @param emissions		the emissions map for words and parts-of-speech to observation scores
+	 * @param unknownWords	the emissions model for words missing from emissions, or null to use UNOBSERVED
+	 * @return	String[] containing the sequence of parts-of-speech tags as found by the Viterbi algorithm
+	 */
+	public static String[] viterbiAlgorithm(String[] observations, Map<String, Map<String, Double>> transitions,
+			Map<String, Map<String, Double>> emissions, UnknownWordModel unknownWords){
 		// Array to hold the path that results in the best final score; the sequence of tags to be returned
 		String[] bestPath = new String[observations.length];
 		
 		// ArrayList of maps mapping each state at position i to the best predecessor state at position i-1
 		List<Map<String, String>> backtrace = new ArrayList<Map<String, String>>();
 		
-		// Map of current states to current scores; currScores also makes a currStates set moot
-		Map<String, Double> currScores = new HashMap<String, Double>();
-		currScores.put("#", 0D); // Initial state with initial score (double) 0
-		Map<String, Double> nextScores; // Variable to hold the currScores for the next observation
-		double nextScore; // Variable to hold the next score
+		// Run the forward pass over all observations, filling in backtrace along the way
+		Map<String, Double> currScores = viterbiForward(observations, transitions, emissions, unknownWords, backtrace);
 		
-		// Iterate over all observations in the given array
-		for (int i = 0; i < observations.length; i++) {
-			nextScores = new HashMap<String, Double>(); // Initialize nextScores (or reset it)
-			backtrace.add(new HashMap<String, String>()); // Add an entry in backtrace for i to i-1
-			for (String state : currScores.keySet()) { // Iterate over all current states in currScores
-				// If transitions doesn't contain a mapping for the current state, skip it
-				if (!transitions.containsKey(state)) continue;
-				
-				// Iterate over all possible next states (all states that this state can transition to)
-				for (String nextState : transitions.get(state).keySet()) {
-					// Compute the next score for the given next state
-					// Expression: current score + transition score + emissions (observation) score if the emissions
-					// matrix has a valid entry for the current observation, or UNOBSERVED otherwise (? operator)
-					nextScore = currScores.get(state) + Math.log(transitions.get(state).get(nextState))
-							+ (!emissions.containsKey(observations[i]) || !emissions.get(observations[i])
-							.containsKey(nextState) ? UNOBSERVED : emissions.get(observations[i]).get(nextState));
-					
-					// If nextScores doesn't already have a value for the current next state, or if the transition
-					// from current state -> next state is the best one so far,
-					if (!nextScores.containsKey(nextState) || nextScores.get(nextState) < nextScore) {
-						nextScores.put(nextState, nextScore); // Add a mapping for this next state to its score
-						backtrace.get(i).put(nextState, state); // Map next state back to this state in backtrace
-					}
-				}
-			}
-			currScores = nextScores; // Replace current scores with next scores
-		}
 		// Variable to hold the best final score found so far
 		double bestScore = Double.NEGATIVE_INFINITY;
 		// Variable to hold the current state in backtracing; should start at the best final state
@@ -86,57 +72,105 @@ public class Viterbi {
 	}
 	
 	/**
-	 * Runs the Viterbi algorithm on the given input sequence of observations given as a String[],
-	 * and returns the corresponding parts-of-speech as a String[]; then generates n additional most likely
-	 * parts-of-speech after the observed values.
+	 * Runs the forward pass of the Viterbi algorithm over the given observations, adding one backtrace
+	 * map per observation to the given list, and returns the scores of the states reached at the last observation.
 	 * 
 	 * @param observations	the String[] containing as sequence of observations (input sentence)
 	 * @param transitions	the transition map for parts-of-speech transitions to their transition scores
 	 * @param emissions		the emissions map for words and parts-of-speech to observation scores
-	 * @param n				the number of additional most-likely POS tags to generate
-	 * @return	String[] containing the sequence of parts-of-speech tags as found by Viterbi decoding and generation
+	 * @param unknownWords	the emissions model for words missing from emissions, or null to use UNOBSERVED
+	 * @param backtrace		the list to fill with maps of each state at position i to its best predecessor at i-1
+	 * @return	map of each final state to its best score
 	 */
-	public static String[] viterbiGenerate(String[] observations, Map<String, Map<String, Double>> transitions,
-			Map<String, Map<String, Double>> emissions, int n) {
-		// Array to hold the path that results in the best final score; the sequence of tags to be returned
-		String[] bestPath = new String[observations.length+n];
-		
-		// ArrayList of maps mapping each state at position i to the best predecessor state at position i-1
-		List<Map<String, String>> backtrace = new ArrayList<Map<String, String>>();
-		
+	public static Map<String, Double> viterbiForward(String[] observations, Map<String, Map<String, Double>> transitions,
+			Map<String, Map<String, Double>> emissions, UnknownWordModel unknownWords, List<Map<String, String>> backtrace){
 		// Map of current states to current scores; currScores also makes a currStates set moot
 		Map<String, Double> currScores = new HashMap<String, Double>();
 		currScores.put("#", 0D); // Initial state with initial score (double) 0
 		Map<String, Double> nextScores; // Variable to hold the currScores for the next observation
 		double nextScore; // Variable to hold the next score
+		Map<String, Double> emissionRow; // Emissions scores of the current observation
+		boolean pruned; // Whether only the tags in emissionRow are expanded at the current observation
 		
 		// Iterate over all observations in the given array
 		for (int i = 0; i < observations.length; i++) {
 			nextScores = new HashMap<String, Double>(); // Initialize nextScores (or reset it)
 			backtrace.add(new HashMap<String, String>()); // Add an entry in backtrace for i to i-1
-			for (String state : currScores.keySet()) { // Iterate over all current states in currScores
-				// If transitions doesn't contain a mapping for the current state, skip it
-				if (!transitions.containsKey(state)) continue;
+			emissionRow = emissionRow(emissions, unknownWords, observations[i]); // Look the observation up once
+			pruned = isPruned(emissions, emissionRow, observations[i]); // No second lookup of the unknown word model
+			while (true) { // Runs again without pruning if no tag the unknown word model kept can be reached
+				for (String state : currScores.keySet()) { // Iterate over all current states in currScores
+					// If transitions doesn't contain a mapping for the current state, skip it
+					if (!transitions.containsKey(state)) continue;
 				
-				// Iterate over all possible next states (all states that this state can transition to)
-				for (String nextState : transitions.get(state).keySet()) {
-					// Compute the next score for the given next state
-					// Expression: current score + transition score + emissions (observation) score if the emissions
-					// matrix has a valid entry for the current observation, or UNOBSERVED otherwise (? operator)
-					nextScore = currScores.get(state) + Math.log(transitions.get(state).get(nextState))
-							+ (!emissions.containsKey(observations[i]) || !emissions.get(observations[i])
-							.containsKey(nextState) ? UNOBSERVED : emissions.get(observations[i]).get(nextState));
+					// Iterate over all possible next states (all states that this state can transition to)
+					for (String nextState : transitions.get(state).keySet()) {
+						// Skip tags the unknown word model left out as too unlikely
+						if (pruned && !emissionRow.containsKey(nextState)) continue;
+						
+						// Compute the next score for the given next state
+						// Expression: current score + transition score + emissions (observation) score, which is
+						// UNOBSERVED if there is no valid entry for the current observation
+						nextScore = currScores.get(state) + Math.log(transitions.get(state).get(nextState))
+								+ emissionScore(emissionRow, nextState);
 					
-					// If nextScores doesn't already have a value for the current next state, or if the transition
-					// from current state -> next state is the best one so far,
-					if (!nextScores.containsKey(nextState) || nextScores.get(nextState) < nextScore) {
-						nextScores.put(nextState, nextScore); // Add a mapping for this next state to its score
-						backtrace.get(i).put(nextState, state); // Map next state back to this state in backtrace
+						// If nextScores doesn't already have a value for the current next state, or if the transition
+						// from current state -> next state is the best one so far,
+						if (!nextScores.containsKey(nextState) || nextScores.get(nextState) < nextScore) {
+							nextScores.put(nextState, nextScore); // Add a mapping for this next state to its score
+							backtrace.get(i).put(nextState, state); // Map next state back to this state in backtrace
+						}
 					}
 				}
+				if (!pruned || !nextScores.isEmpty()) break; // Done, unless pruning left no tag reachable
+				pruned = false;
 			}
 			currScores = nextScores; // Replace current scores with next scores
 		}
+		return currScores;
+	}
+	
+	/**
+	 * Runs the Viterbi algorithm on the given input sequence of observations given as a String[],
+	 * and returns the corresponding parts-of-speech as a String[]; then generates n additional most likely
+	 * parts-of-speech after the observed values.
+	 * 
+	 * @param observations	the String[] containing as sequence of observations (input sentence)
+	 * @param transitions	the transition map for parts-of-speech transitions to their transition scores
+	 * @param emissions		the emissions map for words and parts-of-speech to observation scores
+	 * @param n				the number of additional most-likely POS tags to generate
+	 * @return	String[] containing the sequence of parts-of-speech tags as found by Viterbi decoding and generation
+	 */
+	public static String[] viterbiGenerate(String[] observations, Map<String, Map<String, Double>> transitions,
+			Map<String, Map<String, Double>> emissions, int n) {
+		return viterbiGenerate(observations, transitions, emissions, null, n);
+	}
+	
+	/**
+	 * Runs the Viterbi algorithm on the given input sequence of observations given as a String[], scoring
+	 * words missing from the emissions map with the given unknown word model, and returns the corresponding
+	 * parts-of-speech as a String[]; then generates n additional most likely parts-of-speech after the observed values.
+	 * 
+	 * @param observations	the String[] containing as sequence of observations (input sentence)
+	 * @param transitions	the transition map for parts-of-speech transitions to their transition scores
+	 * @param emissions		the emissions map for words and parts-of-speech to observation scores
+	 * @param unknownWords	the emissions model for words missing from emissions, or null to use UNOBSERVED
+	 * @param n				the number of additional most-likely POS tags to generate
+	 * @return	String[] containing the sequence of parts-of-speech tags as found by Viterbi decoding and generation
+	 */
+	public static String[] viterbiGenerate(String[] observations, Map<String, Map<String, Double>> transitions,
+			Map<String, Map<String, Double>> emissions, UnknownWordModel unknownWords, int n) {
+		// Array to hold the path that results in the best final score; the sequence of tags to be returned
+		String[] bestPath = new String[observations.length+n];
+		
+		// ArrayList of maps mapping each state at position i to the best predecessor state at position i-1
+		List<Map<String, String>> backtrace = new ArrayList<Map<String, String>>();
+		
+		// Run the forward pass over all observations, filling in backtrace along the way
+		Map<String, Double> currScores = viterbiForward(observations, transitions, emissions, unknownWords, backtrace);
+		Map<String, Double> nextScores; // Variable to hold the currScores for the next generated state
+		double nextScore; // Variable to hold the next score
+		
 		// Now basically do the same thing but without observations for the next n states
 		for (int i = observations.length; i < observations.length+n; i++) {
 			nextScores = new HashMap<String, Double>(); // Initialize nextScores (or reset it)
@@ -195,6 +229,25 @@ public class Viterbi {
 	public static String[] viterbiTrigramInterpolate(String[] observations, Map<Pair, Map<String, Double>> trigram,
 			Map<String, Map<String, Double>> bigram, Map<String, Double> unigram,
 			Map<String, Map<String, Double>> emissions){
+		return viterbiTrigramInterpolate(observations, trigram, bigram, unigram, emissions, null);
+	}
+	
+	/**
+	 * Runs the Viterbi algorithm with trigram interpolation on the given input sequence of observations 
+	 * given as a String[], scoring words missing from the emissions map with the given unknown word model,
+	 * and returns the corresponding parts-of-speech as a String[].
+	 * 
+	 * @param observations	a String[] containing the sequence of observations to be fed into the algorithm
+	 * @param trigram	the trigram probability map as given by the Trainer
+	 * @param bigram	the bigram probability map (or transitions map) as given by the Trainer
+	 * @param unigram	the unigram probability map as given by the Trainer
+	 * @param emissions	the emissions probability map (observations map) as given by the Trainer
+	 * @param unknownWords	the emissions model for words missing from emissions, or null to use UNOBSERVED
+	 * @return	a String[] representing the best sequence of POS tags generated by the algorithm
+	 */
+	public static String[] viterbiTrigramInterpolate(String[] observations, Map<Pair, Map<String, Double>> trigram,
+			Map<String, Map<String, Double>> bigram, Map<String, Double> unigram,
+			Map<String, Map<String, Double>> emissions, UnknownWordModel unknownWords){
 		// Array to hold the path that results in the best final score; the sequence of tags to be returned
 		String[] bestPath = new String[observations.length];
 		
@@ -207,39 +260,49 @@ public class Viterbi {
 		Map<String, Double> nextScores; // Variable to hold the currScores for the next observation
 		double nextScore; // Variable to hold the next score
 		double compoundProbability; // Variable to hold the interpolated probability
+		Map<String, Double> emissionRow; // Emissions scores of the current observation
+		boolean pruned; // Whether only the tags in emissionRow are expanded at the current observation
 		// Iterate over all observations in the given array
 		for (int i = 0; i < observations.length; i++) {
 			nextScores = new HashMap<String, Double>(); // Initialize nextScores (or reset it)
 			backtrace.add(new HashMap<String, String>()); // Add an entry in backtrace for i to i-1
-			for (String state : currScores.keySet()) { // Iterate over all current states in currScores
-				// If transitions doesn't contain a mapping for the current state, skip it
-				if (!bigram.containsKey(state)) continue;
+			emissionRow = emissionRow(emissions, unknownWords, observations[i]); // Look the observation up once
+			pruned = isPruned(emissions, emissionRow, observations[i]); // No second lookup of the unknown word model
+			while (true) { // Runs again without pruning if no tag the unknown word model kept can be reached
+				for (String state : currScores.keySet()) { // Iterate over all current states in currScores
+					// If transitions doesn't contain a mapping for the current state, skip it
+					if (!bigram.containsKey(state)) continue;
 				
-				// Iterate over all possible next states (all states that this state can transition to)
-				for (String nextState : bigram.get(state).keySet()) {
-					// First compute the weighted compound transition score
-					compoundProbability = a * (i > 1 ? // If i is greater than 1 (two observations already exist)
-							(trigram.containsKey(new Pair(observations[i-1], observations[i])) ? // If trigram has an entry for the pair
-							(trigram.get(new Pair(observations[i-1], observations[i])).containsKey(nextState) ? // and it has the next state
-							(trigram.get(new Pair(observations[i-1], observations[i])).get(nextState)) // then get it
-							: 0) : 0) : 0) + // Otherwise it's unobserved; no need to assign a value to unobserved result
-							// Since we'll be logging the overall compound probability anyway
-							b * bigram.get(state).get(nextState) + c * unigram.get(nextState); // Weighted sum
+					// Iterate over all possible next states (all states that this state can transition to)
+					for (String nextState : bigram.get(state).keySet()) {
+						// Skip tags the unknown word model left out as too unlikely
+						if (pruned && !emissionRow.containsKey(nextState)) continue;
+						
+						// First compute the weighted compound transition score
+						compoundProbability = a * (i > 1 ? // If i is greater than 1 (two observations already exist)
+								(trigram.containsKey(new Pair(observations[i-1], observations[i])) ? // If trigram has an entry for the pair
+								(trigram.get(new Pair(observations[i-1], observations[i])).containsKey(nextState) ? // and it has the next state
+								(trigram.get(new Pair(observations[i-1], observations[i])).get(nextState)) // then get it
+								: 0) : 0) : 0) + // Otherwise it's unobserved; no need to assign a value to unobserved result
+								// Since we'll be logging the overall compound probability anyway
+								b * bigram.get(state).get(nextState) + c * unigram.get(nextState); // Weighted sum
 					
-					// Compute the next score for the given next state
-					// Expression: current score + compound transition score + emissions (observation) score assuming
-					// matrix has a valid entry for the current observation, or UNOBSERVED otherwise (? operator)
-					nextScore = currScores.get(state) + Math.log(compoundProbability)
-							+ (!emissions.containsKey(observations[i]) || !emissions.get(observations[i])
-							.containsKey(nextState) ? UNOBSERVED : emissions.get(observations[i]).get(nextState));
+						// Compute the next score for the given next state
+						// Expression: current score + compound transition score + emissions (observation) score, which is
+						// UNOBSERVED if there is no valid entry for the current observation
+						nextScore = currScores.get(state) + Math.log(compoundProbability)
+								+ emissionScore(emissionRow, nextState);
 					
-					// If nextScores doesn't already have a value for the current next state, or if the transition
-					// from current state -> next state is the best one so far,
-					if (!nextScores.containsKey(nextState) || nextScores.get(nextState) < nextScore) {
-						nextScores.put(nextState, nextScore); // Add a mapping for this next state to its score
-						backtrace.get(i).put(nextState, state); // Map next state back to this state in backtrace
+						// If nextScores doesn't already have a value for the current next state, or if the transition
+						// from current state -> next state is the best one so far,
+						if (!nextScores.containsKey(nextState) || nextScores.get(nextState) < nextScore) {
+							nextScores.put(nextState, nextScore); // Add a mapping for this next state to its score
+							backtrace.get(i).put(nextState, state); // Map next state back to this state in backtrace
+						}
 					}
 				}
+				if (!pruned || !nextScores.isEmpty()) break; // Done, unless pruning left no tag reachable
+				pruned = false;
 			}
 			currScores = nextScores; // Replace current scores with next scores
 		}
@@ -261,4 +324,47 @@ public class Viterbi {
 		}
 		return bestPath;
 	}
+	
+	/**
+	 * Gets the emissions (observation) scores for the given observation. Observations without their own
+	 * entry are scored by the unknown word model if one is given, or else use the Trainer.UNKNOWN entry
+	 * if the emissions map has one (bounded training).
+	 * 
+	 * @param emissions		the emissions map for words and parts-of-speech to observation scores
+	 * @param unknownWords	the emissions model for words missing from emissions, or null
+	 * @param observation	the observed word
+	 * @return	map of POS to emissions score for the observation, or null if every POS is UNOBSERVED
+	 */
+	public static Map<String, Double> emissionRow(Map<String, Map<String, Double>> emissions,
+			UnknownWordModel unknownWords, String observation){
+		Map<String, Double> row = emissions.get(observation);
+		if (row == null && unknownWords != null) row = unknownWords.scores(observation); // Unseen word
+		if (row == null) row = emissions.get(Trainer.UNKNOWN); // Rare or unseen word, try the unknown word class
+		return row;
+	}
+	
+	/**
+	 * Checks whether the emissions row of the given observation, as given by emissionRow, came from the
+	 * unknown word model: the observation has no entry of its own and the row isn't the Trainer.UNKNOWN entry.
+	 * Tags that model left out are too unlikely to be worth expanding, so the decoders skip them at that
+	 * observation instead of scoring them UNOBSERVED, unless none of the kept tags can be reached.
+	 * 
+	 * @param emissions		the emissions map for words and parts-of-speech to observation scores
+	 * @param emissionRow	map of POS to emissions score for the observation, as given by emissionRow
+	 * @param observation	the observed word
+	 * @return	true if only the tags in the observation's emissions row should be expanded
+	 */
+	public static boolean isPruned(Map<String, Map<String, Double>> emissions, Map<String, Double> emissionRow,
+			String observation){
+		return emissionRow != null && !emissions.containsKey(observation) && emissionRow != emissions.get(Trainer.UNKNOWN);
+	}
+	
+	/**
+	 * @param emissionRow	map of POS to emissions score for an observation, as given by emissionRow
+	 * @param state			the part-of-speech
+	 * @return	the emissions score, or UNOBSERVED if there is no entry for the state
+	 */
+	public static double emissionScore(Map<String, Double> emissionRow, String state){
+		return emissionRow == null || !emissionRow.containsKey(state) ? UNOBSERVED : emissionRow.get(state);
+	}
 }
\ No newline at end of file
@@ -2,6 +2,8 @@ import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Scanner;
 
@@ -13,22 +15,53 @@ import java.util.Scanner;
 public class ViterbiRunner {
 	
 	public static void main(String [] args){
-		Trainer trainer = new Trainer(); // Trainer object, holding necessary maps
 		Scanner console = new Scanner(System.in); // Scanner to accept user input from console
 		boolean trigram;
 		
 		// To catch any input/output run-time exceptions that might occur
 		try {
 			System.out.println("Welcome the the Viterbi Decoder\n\n");
-			System.out.println("Which training corpus would you like to use? i.e. simple, brown etc...");
+			System.out.println("Which training corpora would you like to use? i.e. simple, brown etc...");
+			System.out.println("\t-- separate several corpora with spaces");
 			System.out.print(">>>");
-			String corpus = console.nextLine(); // Training corpus to use
+			String[] corpora = console.nextLine().trim().split("\\s+"); // Training corpora to use
 			System.out.println();
 			
-			// Train trainer based on the given inputs; corpi must be given in the format "name"-train-tags.txt
+			// Bounded training folds rare words into one unknown word class to cap the memory used for word counts
+			System.out.print("Memory budget for word counts in MB (blank for exact training):");
+			String budget = console.nextLine().trim();
+			long budgetBytes = budget.isEmpty() ? 0 : (long) (Double.parseDouble(budget) * 1024 * 1024);
+			
+			// Models can keep an array form, quantized to save memory, that batch decoding uses
+			System.out.print("Array model precision to keep for batch decoding " 
+					+ Arrays.toString(ArrayModel.Precision.values()) + " (blank for none):");
+			String precision = console.nextLine().trim().toUpperCase();
+			ModelRegistry registry = new ModelRegistry(TagGenerator.DEFAULT_MAX_LENGTH, // Registry of trained models
+					precision.isEmpty() ? null : ArrayModel.Precision.valueOf(precision)); // one per corpus
+			
+			// Train a model for each of the given corpora; corpi must be given in the format "name"-train-tags.txt
 			// for training tags and "name"-train-sentences.txt for the associated training sentences
-			trainer.fileTrainer("inputs/" + corpus + "-train-tags.txt", "inputs/" + corpus + "-train-sentences.txt");
+			for (String corpus : corpora) {
+				if (budgetBytes > 0) {
+					TrainedModel model = registry.train(corpus, new Trainer(budgetBytes, Trainer.DEFAULT_MIN_COUNT));
+					System.out.println(corpus + ": " + model.getTrainer().getMemoryReport());
+				}
+				else registry.train(corpus);
+				if (registry.get(corpus).getArrayModel() != null) { // Report what the kept array form costs
+					System.out.println(corpus + ": " + registry.get(corpus).getArrayModel().getPrecision()
+							+ " array model, " + registry.get(corpus).getArrayModel().totalBytes() + " bytes");
+				}
+			}
 			System.out.println("Viterbi training successfully completed.");
+			String modelName = corpora[0]; // Model to use, only need to ask if there is more than one
+			if (corpora.length > 1) {
+				System.out.print("Which model would you like to use " + registry.names() + ":");
+				modelName = console.nextLine().trim();
+				if (registry.get(modelName) == null) {
+					System.out.println("No model named " + modelName + ", quitting...");
+					return;
+				}
+			}
 			System.out.print("Yes or No: you would like to use the trigram method [y/n]:");
 			String answer = console.nextLine().toLowerCase();
 			if (answer.equals("y")) trigram = true;
@@ -40,41 +73,56 @@ public class ViterbiRunner {
 			System.out.println("\ta or accuracy\tcheck the accuracy of the Viterbi algorithm on testing sentences");
 			System.out.println("\t\t\tand correct tags from files in disk");
 			System.out.println("\tg or generate\ttag sentence, then generate most likely following tags");
+			System.out.println("\tb or benchmark\tcompare batch decoding of a file in disk to decoding one sentence");
+			System.out.println("\t\t\tat a time (bigram only)");
+			System.out.println("\tq or quantize\tcompare memory and accuracy of the quantized array models on testing");
+			System.out.println("\t\t\tsentences and correct tags from files in disk (bigram only)");
 
 			System.out.print(">>>"); // To prompt the user
 			String response = console.nextLine();
-			if(response.toLowerCase().equals("f") || response.toLowerCase().equals("file")) fileInput(trainer,trigram); // file input
+			if(response.toLowerCase().equals("f") || response.toLowerCase().equals("file")) fileInput(registry, modelName, trigram); // file input
 			else if(response.toLowerCase().equals("c") || response.toLowerCase().equals("console")) { // direct user input
 				System.out.println();
-				consoleInput(trainer, trigram);
+				consoleInput(registry, modelName, trigram);
 			}
 			// Check the accuracy
 			else if(response.toLowerCase().equals("a") || response.toLowerCase().equals("accuracy")) {
 				System.out.println();
-				computeLoss(trainer, trigram);
+				computeLoss(registry, modelName, trigram);
 			}
 			else if(response.toLowerCase().equals("g") || response.toLowerCase().equals("generate")){
 				System.out.println();
-				consoleGenerate(trainer);
+				consoleGenerate(registry, modelName);
+			}
+			else if(response.toLowerCase().equals("b") || response.toLowerCase().equals("benchmark")){
+				System.out.println();
+				benchmarkBatch(registry, modelName);
+			}
+			else if(response.toLowerCase().equals("q") || response.toLowerCase().equals("quantize")){
+				System.out.println();
+				compareQuantized(registry, modelName);
 			}
 			else System.out.println("Invalid command, quitting..."); // Only three valid options
 		} catch (FileNotFoundException e) { // Catch a FileNotFoundException
 			System.err.println("No such training files for the given corpus exist.");
 		} catch (IOException e) { // Catch any other IOExceptions
 			System.err.println("Exception occurred while reading the training file.");
+		} catch (IllegalArgumentException e) { // Memory budget too small to train with, or no such precision
+			System.err.println(e.getMessage());
 		} finally {
 			console.close(); // Close scanner
 		}
 	}
 	
 	/**
-	 * Runs the Viterbi algorithm as trained by the given Trainer on a file found at the
+	 * Runs the Viterbi algorithm as trained by the named model on a file found at the
 	 * path given by the user through the console.
 	 * 
-	 * @param trainer	Trainer object with the maps necessary for Viterbi algorithm
+	 * @param registry	ModelRegistry holding the trained models
+	 * @param modelName	name of the model to use
 	 * @param trigram	whether the user is in trigram mode or in default bigram mode
 	 */
-	public static void fileInput(Trainer trainer, boolean trigram) {
+	public static void fileInput(ModelRegistry registry, String modelName, boolean trigram) {
 		Scanner sc = new Scanner(System.in); // Scanner object to accept console input
 		 // For convenience, inputs are assumed to be located in the inputs/ directory
 		System.out.print("Input the path (inputs/ assumed as root directory):");
@@ -82,6 +130,9 @@ public class ViterbiRunner {
 		BufferedReader br = null;
 		try {
 			br = new BufferedReader(new FileReader("inputs/" + inputPath)); // Read the test sentences
+			TrainedModel model = requireModel(registry, modelName); // Use the same model for the whole file
+			if (model == null) return;
+			Trainer trainer = model.getTrainer();
 			String currentSentence;
 			while((currentSentence = br.readLine()) != null) { // Each line (sentence)
 				String[] sentenceArray = currentSentence.toLowerCase().split("\\s+"); // Split on whitespace
@@ -89,9 +140,10 @@ public class ViterbiRunner {
 				if(trigram){
 				viterbiTags = Viterbi.viterbiTrigramInterpolate(sentenceArray,trainer.getTrigram(),
 						trainer.getTransitions(), trainer.getUnigram(), 
-						trainer.getObservations()); // Run the Viterbi algorithm on the line
+						trainer.getObservations(), trainer.getUnknownWords()); // Run the Viterbi algorithm on the line
 				}
-				else viterbiTags = Viterbi.viterbiAlgorithm(sentenceArray,trainer.getTransitions(),trainer.getObservations());
+				else viterbiTags = Viterbi.viterbiAlgorithm(sentenceArray,trainer.getTransitions(),trainer.getObservations(),
+						trainer.getUnknownWords());
 				// For each state in the parts-of-speech sequence given by the Viterbi algorithm best path
 				for (String state : viterbiTags)
 					System.out.print(state + " "); // Print a line containing the sequence of POS states
@@ -116,28 +168,43 @@ public class ViterbiRunner {
 	}
 	
 	/**
-	 * Runs the Viterbi algorithm as trained by the given Trainer on lines given directly
+	 * Runs the Viterbi algorithm as trained by the named model on lines given directly
 	 * by the user through console input.
 	 * 
-	 * @param trainer	Trainer object with the maps necessary for Viterbi algorithm
+	 * @param registry	ModelRegistry holding the trained models
+	 * @param modelName	name of the model to use
 	 * @param trigram 	whether the user is in trigram mode or default bigram mode
 	 */
-	public static void consoleInput(Trainer trainer, boolean trigram) {
+	public static void consoleInput(ModelRegistry registry, String modelName, boolean trigram) {
 		Scanner sc = new Scanner(System.in);
 		System.out.println("Input the sentence, with spacing between each word and punctuation mark");
 		System.out.println("\t-- >>> prompts a new sentence");
+		System.out.println("\t-- type r to retrain the model from its corpus without stopping");
 		System.out.println("\t-- type q to quit");
 		String sentence;
 		System.out.print(">>>");
 		while(!(sentence = sc.nextLine()).equals("q")) { // If q, loop terminates
 			String[] sentenceArray = sentence.toLowerCase().split("\\s+"); // Transform the given input into an array
+			if (sentence.equals("r")) { // Retrain while this loop keeps tagging with the current model
+				reloadInBackground(registry, modelName);
+				System.out.print(">>>");
+				continue;
+			}
+			// Look the model up for each sentence, so a retrained model is used as soon as it is swapped in
+			TrainedModel model = requireModel(registry, modelName);
+			if (model == null) { // Skip this sentence
+				System.out.print(">>>");
+				continue;
+			}
+			Trainer trainer = model.getTrainer();
 			String[] viterbiTags;
 			if(trigram){
 			viterbiTags = Viterbi.viterbiTrigramInterpolate(sentenceArray,trainer.getTrigram(),
 					trainer.getTransitions(), trainer.getUnigram(), 
-					trainer.getObservations()); // Run the Viterbi algorithm on the line
+					trainer.getObservations(), trainer.getUnknownWords()); // Run the Viterbi algorithm on the line
 			}
-			else viterbiTags = Viterbi.viterbiAlgorithm(sentenceArray,trainer.getTransitions(),trainer.getObservations());
+			else viterbiTags = Viterbi.viterbiAlgorithm(sentenceArray,trainer.getTransitions(),trainer.getObservations(),
+					trainer.getUnknownWords());
 			// For each state in the parts-of-speech best path given by the Viterbi algorithm, 
 			for (String state : viterbiTags)
 				System.out.print(state + " "); // Print a line with the sequence of states
@@ -154,10 +221,11 @@ public class ViterbiRunner {
 	 * by user input through console, to the correct tags located in a second file whose path is given
 	 * by user input through the console.
 	 * 
-	 * @param trainer	Trainer object with the maps necessary for Viterbi algorithm
+	 * @param registry	ModelRegistry holding the trained models
+	 * @param modelName	name of the model to use
 	 * @param trigram 	whether the user is in trigram mode or default bigram mode
 	 */
-	public static void computeLoss(Trainer trainer, boolean trigram) {
+	public static void computeLoss(ModelRegistry registry, String modelName, boolean trigram) {
 		Scanner sc = new Scanner(System.in);
 		System.out.print("Input the path of the test sentences file (inputs/ assumed as root directory): ");
 		String testPath = sc.nextLine(); //test file
@@ -172,6 +240,9 @@ public class ViterbiRunner {
 		try{
 			tagFile = new BufferedReader(new FileReader("inputs/" + tagPath));
 			testFile = new BufferedReader(new FileReader("inputs/" + testPath));
+			TrainedModel model = requireModel(registry, modelName); // Use the same model for the whole test
+			if (model == null) return;
+			Trainer trainer = model.getTrainer();
 			String currentSentence, currentTags; //the tags and sentence that are being looked at
 			
 			// Use && instead of ||, so no short-circuiting occurs and both lines are instantiated
@@ -182,9 +253,10 @@ public class ViterbiRunner {
 				if(trigram){
 				viterbiTags = Viterbi.viterbiTrigramInterpolate(sentenceArray,trainer.getTrigram(),
 						trainer.getTransitions(), trainer.getUnigram(), 
-						trainer.getObservations()); // Run the Viterbi algorithm on the line
+						trainer.getObservations(), trainer.getUnknownWords()); // Run the Viterbi algorithm on the line
 				}
-				else viterbiTags = Viterbi.viterbiAlgorithm(sentenceArray,trainer.getTransitions(),trainer.getObservations());
+				else viterbiTags = Viterbi.viterbiAlgorithm(sentenceArray,trainer.getTransitions(),trainer.getObservations(),
+						trainer.getUnknownWords());
 				if (tagArray.length != viterbiTags.length){ // Lines are not equal, something wrong with input files
 					System.err.println("Mismatched line found in the two input files. Terminating...");
 					return;
@@ -223,26 +295,45 @@ public class ViterbiRunner {
 	}
 	
 	/**
-	 * Runs the Viterbi algorithm as trained by the given Trainer on lines given directly
+	 * Runs the Viterbi algorithm as trained by the named model on lines given directly
 	 * by the user through console input, then generates additional most-likely POS.
 	 * 
-	 * @param trainer	Trainer object with the maps necessary for Viterbi algorithm
+	 * @param registry	ModelRegistry holding the trained models
+	 * @param modelName	name of the model to use
 	 */
-	public static void consoleGenerate(Trainer trainer) {
+	public static void consoleGenerate(ModelRegistry registry, String modelName) {
 		Scanner sc = new Scanner(System.in);
 		System.out.println("How many parts-of-speech tags would you like to generate per line?");
 		int n = Integer.parseInt(sc.nextLine()); // Don't use nextInt or nextInt will overlap with nextLine below
+		if (n < 0) { // Can't generate a negative number of tags
+			System.out.println("The number of tags must not be negative, quitting...");
+			sc.close();
+			return;
+		}
 		System.out.println("Input the sentence, with spacing between each word and punctuation mark");
 		System.out.println("\t-- >>> prompts a new sentence");
+		System.out.println("\t-- type r to retrain the model from its corpus without stopping");
 		System.out.println("\t-- type q to quit");
 		String sentence;
 		System.out.print(">>>");
 		while(!(sentence = sc.nextLine()).equals("q")) { // If q, loop terminates
 			String[] sentenceArray = sentence.toLowerCase().split("\\s+"); // Transform the given input into an array
+			if (sentence.equals("r")) { // Retrain while this loop keeps tagging with the current model
+				reloadInBackground(registry, modelName);
+				System.out.print(">>>");
+				continue;
+			}
+			// Look the model up for each sentence, so a retrained model is used as soon as it is swapped in
+			TrainedModel model = requireModel(registry, modelName);
+			if (model == null) { // Skip this sentence
+				System.out.print(">>>");
+				continue;
+			}
 			
 			int i = 0;
 			// For each state in the parts-of-speech best path given by the Viterbi algorithm, 
-			for (String state : Viterbi.viterbiGenerate(sentenceArray,trainer.getTransitions(),trainer.getObservations(), n)) {
+			for (String state : model.getGenerator().generate(sentenceArray, model.getTrainer().getObservations(),
+					model.getTrainer().getUnknownWords(), n)) {
 				if (i == sentenceArray.length) System.out.print("| "); // Let the user know which tags are generated
 				System.out.print(state + " "); // Print a line with the sequence of states
 				i++;
@@ -255,6 +346,216 @@ public class ViterbiRunner {
 		sc.close(); // Close scanner
 	}
 
+	/**
+	 * Decodes every sentence of a file, whose path is given by user input through the console, both
+	 * one sentence at a time with the Viterbi algorithm and all at once with the BatchDecoder. Checks
+	 * that the results match and prints the time each one took. The BatchDecoder uses the model's
+	 * kept ArrayModel if it has one, which only matches exactly at DOUBLE precision.
+	 * 
+	 * @param registry	ModelRegistry holding the trained models
+	 * @param modelName	name of the model to use
+	 */
+	public static void benchmarkBatch(ModelRegistry registry, String modelName) {
+		Scanner sc = new Scanner(System.in);
+		System.out.print("Input the path of the test sentences file (inputs/ assumed as root directory): ");
+		String testPath = sc.nextLine(); // test file
+		System.out.println();
+		
+		BufferedReader testFile = null;
+		try {
+			testFile = new BufferedReader(new FileReader("inputs/" + testPath));
+			List<String[]> sentences = new ArrayList<String[]>(); // Read every sentence up front
+			String currentSentence;
+			while ((currentSentence = testFile.readLine()) != null) {
+				sentences.add(currentSentence.toLowerCase().split("\\s+")); // Whitespace split
+			}
+			TrainedModel model = requireModel(registry, modelName); // Use the same model for the whole benchmark
+			if (model == null) return;
+			Trainer trainer = model.getTrainer();
+			
+			long start = System.nanoTime();
+			ArrayModel arrayModel = model.getArrayModel(); // Kept array form, or build an exact one now
+			if (arrayModel == null) arrayModel = new ArrayModel(trainer);
+			BatchDecoder decoder = new BatchDecoder(arrayModel);
+			long buildTime = System.nanoTime() - start;
+			
+			// Run each a few times and keep the fastest, so the timings aren't just JIT warm-up
+			List<String[]> singleTags = null, batchTags = null;
+			long singleTime = Long.MAX_VALUE, batchTime = Long.MAX_VALUE;
+			for (int round = 0; round < 3; round++) {
+				start = System.nanoTime();
+				singleTags = new ArrayList<String[]>();
+				for (String[] sentenceArray : sentences) {
+					singleTags.add(Viterbi.viterbiAlgorithm(sentenceArray, trainer.getTransitions(), trainer.getObservations(),
+							trainer.getUnknownWords()));
+				}
+				singleTime = Math.min(singleTime, System.nanoTime() - start);
+				
+				start = System.nanoTime();
+				batchTags = decoder.decode(sentences);
+				batchTime = Math.min(batchTime, System.nanoTime() - start);
+			}
+			
+			int mismatched = 0; // Sentences where the two decoders disagree
+			for (int i = 0; i < sentences.size(); i++) {
+				if (!Arrays.equals(singleTags.get(i), batchTags.get(i))) mismatched++;
+			}
+			
+			// Print the results from the benchmark to the console
+			System.out.println("# Sentences: " + sentences.size());
+			System.out.println("One at a time: " + singleTime / 1000000 + " ms");
+			System.out.println("Batch (" + arrayModel.getPrecision() + "): " + batchTime / 1000000 + " ms (plus "
+					+ buildTime / 1000000 + " ms to build the array model)");
+			System.out.println("# Mismatched sentences: " + mismatched);
+		} catch (FileNotFoundException e) { // If the file doesn't exist, notify the user
+			System.err.println("No file found at the path inputs/" + testPath);
+		} catch (IOException e) { // If any other generic IOExceptions occurred, notify the user
+			System.err.println("Exception occurred while reading the file at inputs/" + testPath);
+		}
+		finally {
+			sc.close(); // Close the scanner
+			try { // Try to close the test file
+				if (testFile == null) return; // the BufferedReader was never initialized anyway
+				testFile.close();
+			} catch (IOException e) { // If an IOException was thrown
+				System.err.println("Exception occurred while closing the file at inputs/" + testPath);
+			}
+		}
+	}
+
+	/**
+	 * Compares the tags given by the BatchDecoder at each ArrayModel precision on a testing file to the
+	 * correct tags in a second file, the same way computeLoss does, and prints the memory used by each
+	 * model (tables plus the word and tag indices and the unknown word cache, which don't shrink) alongside
+	 * its accuracy.
+	 * Both paths are given by user input through the console.
+	 * 
+	 * @param registry	ModelRegistry holding the trained models
+	 * @param modelName	name of the model to use
+	 */
+	public static void compareQuantized(ModelRegistry registry, String modelName) {
+		Scanner sc = new Scanner(System.in);
+		System.out.print("Input the path of the test sentences file (inputs/ assumed as root directory): ");
+		String testPath = sc.nextLine(); //test file
+		System.out.println();
+		System.out.print("Input the path of the correct tags file (inputs/ assumed as root directory): ");
+		String tagPath = sc.nextLine(); //tag file
+		System.out.println();
+
+		BufferedReader tagFile = null; BufferedReader testFile = null; // Declare br here for exception handling
+		try{
+			tagFile = new BufferedReader(new FileReader("inputs/" + tagPath));
+			testFile = new BufferedReader(new FileReader("inputs/" + testPath));
+			List<String[]> sentences = new ArrayList<String[]>(); // Read every line up front to decode as a batch
+			List<String[]> tags = new ArrayList<String[]>();
+			String currentSentence, currentTags; //the tags and sentence that are being looked at
+			
+			// Use && instead of ||, so no short-circuiting occurs and both lines are instantiated
+			while ((currentSentence = testFile.readLine()) != null && (currentTags = tagFile.readLine()) != null) {
+				sentences.add(currentSentence.toLowerCase().split("\\s+")); // Whitespace split
+				tags.add(currentTags.split("\\s+")); // Whitespace split
+			}
+			TrainedModel trainedModel = requireModel(registry, modelName); // Use the same model for every precision
+			if (trainedModel == null) return;
+			Trainer trainer = trainedModel.getTrainer();
+			
+			double exactPercentage = 0; // Accuracy at DOUBLE precision, to compare the others to
+			long exactBytes = 0; // Memory used at DOUBLE precision
+			for (ArrayModel.Precision precision : ArrayModel.Precision.values()) {
+				ArrayModel model = new ArrayModel(trainer, precision);
+				List<String[]> viterbiTags = new BatchDecoder(model).decode(sentences);
+				
+				int correct = 0; // To hold the number of correct tags
+				int wrong = 0; // To hold the number of wrong tags
+				for (int line = 0; line < sentences.size(); line++) {
+					String[] tagArray = tags.get(line);
+					if (tagArray.length != viterbiTags.get(line).length){ // Lines are not equal, something wrong with input files
+						System.err.println("Mismatched line found in the two input files. Terminating...");
+						return;
+					}
+					for (int i = 0; i < tagArray.length; i++) { // Iterate over all tags
+						if(tagArray[i].equals(viterbiTags.get(line)[i])) correct++; // Keep track of matching and wrong tags
+						else wrong++;
+					}
+				}
+				double percentage = ((double) correct / (correct + wrong)) * 100;
+				if (precision == ArrayModel.Precision.DOUBLE) {
+					exactPercentage = percentage;
+					exactBytes = model.totalBytes();
+				}
+				
+				// Print the results for this precision to the console
+				System.out.println(precision + ": " + model.totalBytes() + " bytes (tables " + model.tableBytes()
+						+ ", indices " + model.indexBytes() + ", unknown word cache " + model.cacheBytes() + ", "
+						+ (exactBytes - model.totalBytes()) + " saved, "
+						+ Math.round(100.0 * (exactBytes - model.totalBytes()) / exactBytes) + "%), # Correct: "
+						+ correct + ", # Wrong: " + wrong
+						+ ", " + percentage + "% correct (" + (percentage - exactPercentage) + " change)");
+			}
+		} catch (FileNotFoundException e) { // If one the files doesn't exist, notify the user
+			System.err.println("Exception occurred as one or more input files do not exist.");
+		} catch (IOException e) { // If any other generic IOExceptions occurred, notify the user
+			System.err.println("Exception occurred while reading one of the input files.");
+		}
+		finally {
+			sc.close(); // Close the scanner
+			try { // Try to close the tags file
+				if (tagFile == null) return; // the BufferedReader was never initialized anyway
+				tagFile.close(); // Close br
+			} catch (IOException e) { // If an IOException was thrown
+				System.err.println("Exception occurred while closing the file at inputs/" + tagPath);
+			}
+			try { // Try to close the test file
+				if (testFile == null) return; // the BufferedReader was never initialized anyway
+				testFile.close(); // Close br
+			} catch (IOException e) { // If an IOException was thrown
+				System.err.println("Exception occurred while closing the file at inputs/" + testPath);
+			}
+		}
+	}
+
+	/**
+	 * Gets the named model from the registry, telling the user if there is no such model.
+	 * 
+	 * @param registry	ModelRegistry holding the trained models
+	 * @param modelName	name of the model to get
+	 * @return	the current model, or null if no model with that name is loaded
+	 */
+	private static TrainedModel requireModel(ModelRegistry registry, String modelName) {
+		TrainedModel model = registry.get(modelName);
+		if (model == null) System.err.println("No model named " + modelName + " is loaded.");
+		return model;
+	}
+
+	/**
+	 * Retrains the named model from its corpus on a background thread, with the same memory settings it
+	 * was first trained with, and swaps it into the registry once training has finished. Sentences tagged
+	 * in the meantime keep using the current model.
+	 * 
+	 * @param registry	ModelRegistry holding the trained models
+	 * @param modelName	name of the model to retrain, which is also the name of its corpus
+	 */
+	private static void reloadInBackground(final ModelRegistry registry, final String modelName) {
+		TrainedModel current = requireModel(registry, modelName);
+		if (current == null) return;
+		Trainer old = current.getTrainer();
+		final Trainer trainer = old.isBounded() ? new Trainer(old.getMemoryBudget(), old.getMinCount()) : new Trainer();
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					registry.train(modelName, trainer); // Swapped in atomically once fully trained
+					System.out.println();
+					System.out.println("Model " + modelName + " retrained and swapped in.");
+				} catch (IOException e) { // Includes missing files; the current model keeps serving
+					System.err.println("Exception occurred while retraining " + modelName + ", keeping the current model.");
+				}
+			}
+		});
+		thread.setDaemon(true); // Don't keep the program running after the user quits
+		thread.start();
+		System.out.println("Retraining " + modelName + " in the background...");
+	}
+
 //	
 }
 